@@ -1,5 +1,7 @@
 package vub.be.oecd;
 
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb2.TDB2Factory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -10,19 +12,54 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+import vub.be.oecd.service.DatasetExporter;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 
 //to exclude web security use:
 // @SpringBootApplication(exclude = SecurityAutoConfiguration.class)
 @SpringBootApplication
 @Configuration
+@EnableScheduling
 public class OecdApplication extends SpringBootServletInitializer {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("export")) {
+			export(args);
+			return;
+		}
 		SpringApplication.run(OecdApplication.class, args);
 	}
 
+	/**
+	 * Command line export of the TDB2 dataset, without starting the application (or connecting to MySQL):
+	 * export <file> [nquads|turtle] [tdb2 location]
+	 * The location defaults to TDB2_LOCATION or tdb2, like oecd.tdb2.location. TDB2 locks its location,
+	 * so export a running application with /export instead.
+	 */
+	private static void export(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: export <file> [nquads|turtle] [tdb2 location]");
+			System.exit(1);
+		}
+		DatasetExporter.Format format = args.length > 2
+				? DatasetExporter.Format.valueOf(args[2].toUpperCase()) : DatasetExporter.Format.NQUADS;
+		String location = args.length > 3 ? args[3]
+				: System.getenv("TDB2_LOCATION") != null ? System.getenv("TDB2_LOCATION") : "tdb2";
+		Dataset dataset = TDB2Factory.connectDataset(location);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+			DatasetExporter.export(dataset, format, out);
+		} finally {
+			dataset.close();
+		}
+	}
+
 	@Override
 	protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
 		return application.sources(applicationClass);
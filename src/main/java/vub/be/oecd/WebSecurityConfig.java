@@ -20,7 +20,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         http
                 .csrf().disable();
         http.authorizeRequests().antMatchers("/webjars/**").permitAll()
-                .requestMatchers(PathRequest.toStaticResources().atCommonLocations()).permitAll();
+                .requestMatchers(PathRequest.toStaticResources().atCommonLocations()).permitAll()
+                //maintenance jobs (imports, reindexing, ...), with basic authentication for scripts
+                .antMatchers("/admin/**").authenticated()
+                .and()
+                .httpBasic();
         /*http
                 .authorizeRequests()
                 .antMatchers("/", "/home").permitAll()
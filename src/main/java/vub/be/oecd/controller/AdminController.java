@@ -0,0 +1,143 @@
+package vub.be.oecd.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import vub.be.oecd.model.ImportStatus;
+import vub.be.oecd.model.RematerializationStatus;
+import vub.be.oecd.service.DossierImportJob;
+import vub.be.oecd.service.DossierTextIndex;
+import vub.be.oecd.service.RematerializationJob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Maintenance jobs, JSON only. Only for authenticated users, see WebSecurityConfig
+ */
+@Controller
+@RequestMapping(path = "/admin")
+public class AdminController {
+
+    @Autowired
+    private RematerializationJob rematerializationJob;
+
+    @Autowired
+    private DossierTextIndex dossierTextIndex;
+
+    @Autowired
+    private DossierImportJob dossierImportJob;
+
+    /**
+     * Converts the XML of all dossiers (with an id above fromId) again and rewrites their graphs
+     */
+    @PostMapping("/rematerialize")
+    public ResponseEntity<RematerializationStatus> startRematerialization(
+            @RequestParam(value = "fromId", defaultValue = "0") long fromId) {
+        boolean started = rematerializationJob.start(fromId);
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(rematerializationJob.getStatus());
+    }
+
+    /**
+     * Continues a stopped or failed run after its checkpoint
+     */
+    @PostMapping("/rematerialize/resume")
+    public ResponseEntity<RematerializationStatus> resumeRematerialization() {
+        boolean started = rematerializationJob.resume();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(rematerializationJob.getStatus());
+    }
+
+    @PostMapping("/rematerialize/stop")
+    public @ResponseBody RematerializationStatus stopRematerialization() {
+        rematerializationJob.stop();
+        return rematerializationJob.getStatus();
+    }
+
+    /**
+     * Progress, throughput and failures of the current or last run
+     */
+    @GetMapping("/rematerialize")
+    public @ResponseBody RematerializationStatus getRematerializationStatus() {
+        return rematerializationJob.getStatus();
+    }
+
+    /**
+     * Rebuilds the full-text index from the dossier graphs
+     */
+    @PostMapping("/reindex")
+    public @ResponseBody Map<String, Integer> reindex() throws IOException {
+        return Collections.singletonMap("dossiers", dossierTextIndex.rebuild());
+    }
+
+    /**
+     * Imports the Blockly XML files of an uploaded zip as new dossiers
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportStatus> importZip(@RequestParam("file") MultipartFile file) throws IOException {
+        //the upload is removed after the request, the import keeps going longer
+        File zip = File.createTempFile("dossier-import", ".zip");
+        file.transferTo(zip);
+        boolean started = dossierImportJob.startZip(zip, file.getOriginalFilename(), true);
+        if (!started)
+            Files.delete(zip.toPath());
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(dossierImportJob.getStatus());
+    }
+
+    /**
+     * Imports the Blockly XML files in a directory of the server as new dossiers
+     * @param directory path relative to oecd.import.root
+     */
+    @PostMapping(value = "/import", params = "directory")
+    public ResponseEntity<?> importDirectory(@RequestParam("directory") String directory) throws IOException {
+        File file = dossierImportJob.resolveDirectory(directory);
+        if (file == null)
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN)
+                    .body("No directory " + directory + " below oecd.import.root");
+        boolean started = dossierImportJob.startDirectory(file);
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(dossierImportJob.getStatus());
+    }
+
+    @PostMapping("/import/stop")
+    public @ResponseBody ImportStatus stopImport() {
+        dossierImportJob.stop();
+        return dossierImportJob.getStatus();
+    }
+
+    /**
+     * Progress of the current or last import, with the first failures
+     */
+    @GetMapping("/import")
+    public @ResponseBody ImportStatus getImportStatus() {
+        return dossierImportJob.getStatus();
+    }
+
+    /**
+     * Failure manifest of the current or last import: file and reason, as CSV
+     */
+    @GetMapping(value = "/import/failures", produces = "text/csv")
+    public @ResponseBody String getImportFailures() {
+        StringBuilder csv = new StringBuilder("file,error\n");
+        for (Map.Entry<String, String> failure : dossierImportJob.getFailures().entrySet())
+            csv.append(csvValue(failure.getKey())).append(',').append(csvValue(failure.getValue())).append('\n');
+        return csv.toString();
+    }
+
+    private static String csvValue(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
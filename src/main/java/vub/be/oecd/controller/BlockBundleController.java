@@ -0,0 +1,94 @@
+package vub.be.oecd.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import vub.be.oecd.model.BlockBundle;
+import vub.be.oecd.model.OntologySnapshot;
+import vub.be.oecd.service.BlockBundleService;
+import vub.be.oecd.service.OntologyRegistry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the Blockly block definitions of an ontology version as one JavaScript file.
+ * The url contains the ontology version, so the file never changes and browsers can cache it for good.
+ */
+@Controller
+public class BlockBundleController {
+
+    private static final MediaType JAVASCRIPT = new MediaType("application", "javascript", StandardCharsets.UTF_8);
+
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    @Autowired
+    private BlockBundleService blockBundleService;
+
+    /**
+     * Returns the bundle (gzipped when the browser accepts it), or 304 when the ETag matches.
+     * Requests for an older ontology version are redirected to the current one.
+     */
+    @GetMapping("/blocks/{ontologyVersion}.js")
+    public ResponseEntity<byte[]> getBlockBundle(@PathVariable(value = "ontologyVersion") String ontologyVersion,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        OntologySnapshot snapshot = ontologyRegistry.getSnapshot();
+        if (!snapshot.getVersion().equals(ontologyVersion)) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                            .path("/blocks/{version}.js").buildAndExpand(snapshot.getVersion()).toUri())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        BlockBundle bundle = blockBundleService.getBundle(snapshot);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        //the ETag is checked by spring, a matching If-None-Match results in 304 without body
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(gzip ? bundle.getGzippedETag() : bundle.getETag())
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(JAVASCRIPT);
+        if (gzip)
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(bundle.getGzippedContent());
+        return response.body(bundle.getContent());
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header, eg. "gzip;q=0.8, br", null when absent
+     * @return whether gzip (or *) is listed with a quality above 0, an explicit gzip wins over *
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return false;
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip"))
+                return quality > 0;
+            if (name.equals("*"))
+                wildcard = quality > 0;
+        }
+        return wildcard != null && wildcard;
+    }
+}
@@ -1,38 +1,31 @@
 package vub.be.oecd.controller;
 
 
-import org.apache.commons.io.FileUtils;
-import org.apache.jena.ext.com.google.common.io.Resources;
-import org.apache.jena.query.Dataset;
-import org.apache.jena.query.ReadWrite;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
-import org.apache.jena.tdb2.TDB2Factory;
-import org.apache.jena.vocabulary.RDFS;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import vub.be.oecd.model.BlockDefinition;
+import org.springframework.web.context.request.WebRequest;
 import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
 import vub.be.oecd.model.Dossier;
-import vub.be.oecd.model.ReportBlockDefinition;
+import vub.be.oecd.model.OntologySnapshot;
+import vub.be.oecd.model.RdfStatus;
 import vub.be.oecd.service.DomainConceptService;
+import vub.be.oecd.service.DossierGraphStore;
+import vub.be.oecd.service.DossierRdfConverter;
 import vub.be.oecd.service.DossierService;
-import vub.be.oecd.util.OECDVariables;
-
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
+import vub.be.oecd.service.OntologyRegistry;
+import vub.be.oecd.service.RdfMaterializer;
+import vub.be.oecd.service.SuggestService;
+
 import java.io.StringWriter;
 import java.util.*;
 
@@ -45,14 +38,31 @@ import java.util.*;
 @RequestMapping(path="/") // This means URL's start with "" (after Application path)
 public class DossierController {
 
+    //columns the lists on the index page can be sorted on
+    private static final List<String> DOSSIER_SORTS = Arrays.asList("id", "name", "url");
+    private static final List<String> CONCEPT_SORTS = Arrays.asList("id", "name", "url", "type");
+
     @Autowired
     private DossierService dossierService;
 
     @Autowired
     private DomainConceptService domainConceptService;
 
-    //for the creation of Blockly blocks
-    private static org.apache.jena.rdf.model.Model ontology;
+    //for the creation of Blockly blocks, parsed once and shared by all requests
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    //shared TDB2 dataset with the RDF of the dossiers
+    @Autowired
+    private DossierGraphStore dossierGraphStore;
+
+    //creates the RDF of saved dossiers in the background
+    @Autowired
+    private RdfMaterializer rdfMaterializer;
+
+    //names for the "composed of" dropdown of the domain concepts
+    @Autowired
+    private SuggestService suggestService;
 
     /**
      * Dossier related stuff
@@ -75,13 +85,44 @@ public class DossierController {
     @PostMapping("/updateDossier")
     public String updateDossier(@ModelAttribute("dossier") Dossier dossier){
         System.out.println("in update Dossier");
+        String xml = dossier.getXML();
+        if(xml != null) {
+            xml = DossierRdfConverter.normalize(xml);
+            dossier.setXML(xml);
+        }
         //save dossier to database
         dossierService.saveDossier(dossier);
-        rawxml = dossier.getXML();
-        onSuccessFromRDFForm(dossier);
+        //the RDF is created in the background, see /dossier/{id}/rdf-status
+        if(xml != null)
+            rdfMaterializer.submit(dossier.getId(), xml);
         return "redirect:/showDossierUpdatePage/" + dossier.getId();
     }
 
+    /**
+     * State of the RDF materialization of the last save of a dossier: pending, done or failed, with timings
+     */
+    @GetMapping("/dossier/{id}/rdf-status")
+    public ResponseEntity<RdfStatus> getRdfStatus(@PathVariable (value = "id") long id) {
+        RdfStatus status = rdfMaterializer.getStatus(id);
+        if(status == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(status);
+    }
+
+    /**
+     * The RDF of a dossier as it is in the TDB2 dataset, in turtle
+     */
+    @GetMapping(value = "/dossier/{id}/rdf", produces = "text/turtle")
+    public @ResponseBody String getRdf(@PathVariable (value = "id") long id) {
+        return toTurtle(dossierGraphStore.readGraph(id));
+    }
+
+    private String toTurtle(org.apache.jena.rdf.model.Model model) {
+        StringWriter out = new StringWriter();
+        model.write(out, "TURTLE");
+        return out.toString();
+    }
+
 
     @GetMapping("/showDossierUpdatePage/{id}")
     public String showUpdateDossierPage(@PathVariable (value = "id") long id, Model model){
@@ -94,21 +135,14 @@ public class DossierController {
         //set dossier as a model attribute to pre-populate the form
         model.addAttribute("dossier", dossier);
 
-        //load the ontology
-        try{
-            ontology = ModelFactory.createDefaultModel();
-            RDFDataMgr.read(ontology, "static/ontologie.ttl", Lang.TURTLE);
-            model.addAttribute("ontology", ontology);
-            System.out.println("Ontology loaded");
-            model.addAttribute("rdf", rdf);
-            model.addAttribute("selectedBlockType", selectedBlockType);
-
-            //get blocks from RDFS
-            List<BlockDefinition> blockDefinitions = getBlockDefinitions();
-            model.addAttribute("blockDefinitions", blockDefinitions);
-        } catch (Exception e){
-            System.out.println("Problem loading ontology:" + e);
-        }
+        //use the same ontology snapshot for the whole page
+        OntologySnapshot snapshot = ontologyRegistry.getSnapshot();
+        model.addAttribute("ontology", snapshot.getModel());
+        model.addAttribute("rdf", toTurtle(dossierGraphStore.readGraph(id)));
+        model.addAttribute("rdfStatus", rdfMaterializer.getStatus(id));
+        model.addAttribute("reportsAsList", snapshot.getCatalog().getReportsAsList());
+        //blocks from RDFS are loaded by the page from /blocks/{ontologyVersion}.js
+        model.addAttribute("ontologyVersion", snapshot.getVersion());
         return "update_dossier";
     }
 
@@ -124,51 +158,11 @@ public class DossierController {
     }
 
     /**
-     * The following methods allow to retrieve the list of reports from the ontology
-     * These are made static so that they can be called from the controller using thymleaf [[${}]] notation
-     */
-    private static String reportsAsList = null;
-    public static String getReportsAsList(){
-        if(reportsAsList == null) {
-            List<String> x = new ArrayList<String>();
-            for(BlockDefinition s : getReports())
-                x.add("\"" + s.getType() + "\"");
-            reportsAsList = x.toString();
-        }
-        System.out.println("In reportAsList this is the list: " + reportsAsList);
-        return reportsAsList;
-    }
-
-    public static List<BlockDefinition> getReports() {
-        List<BlockDefinition> list = new ArrayList<BlockDefinition>();
-        StmtIterator iter = ontology.listStatements(null, RDFS.subClassOf, OECDVariables.REPORT);
-        while(iter.hasNext()) {
-            Resource r = iter.next().getSubject();
-            BlockDefinition report = new ReportBlockDefinition(r);
-            list.add(report);
-        }
-        return list;
-    }
-
-
-    // SHARE PROPERTY FOR THE BLOCKDEFINITIONLISTS
-    private BlockDefinition blockDefinition;
-
-    /**
-     * Returns a complete list of block definitions. This one is necessary
-     * to load all block definitions in the client.
-     * BlockDefinitions will be converted into blockly blocks using "block_component" fragment
-     * @return List of all BlockDefinitions in ontology
+     * The reports and the complete list of block definitions come from the BlockCatalog of the
+     * current ontology snapshot, which is built once per ontology version.
+     * BlockDefinitions are converted into blockly blocks by the BlockBundleController,
+     * the children of the selected block come from the ToolboxController
      */
-    public List<BlockDefinition> getBlockDefinitions() {
-        List<BlockDefinition> list = new ArrayList<BlockDefinition>();
-        for(BlockDefinition s : getReports()) {
-            list.add(s);
-            list.addAll(s.getBlocks());
-        }
-        System.out.println("In getBlockDefinitions" + list);
-        return list;
-    }
 
     /**
      * Returns a list of block definitions only containing those of reports.
@@ -176,193 +170,65 @@ public class DossierController {
      */
     @RequestMapping(value = "/blockDefinitionsForReports", method = RequestMethod.GET)
     public String getBlockDefinitionsForReports(Model model) {
-        List<BlockDefinition> list = new ArrayList<BlockDefinition>();
-        for(BlockDefinition s : getReports()) {
-            list.add(s);
-        }
         System.out.println("In getBlockDefinitionsForReports");
-        model.addAttribute("reportBlocks", list);
+        model.addAttribute("reportBlocks", ontologyRegistry.getSnapshot().getCatalog().getReports());
         //referring to a fragment named blockDefinitionsForReportsList which is located in the results page
         return "results :: blockDefinitionsForReportsList";
     }
 
 
 
-    private String selectedBlockType;
-
-    /**
-     * Returns a list of block definitions for the "components" part of the tool box.
-     * Defaults to the reports, otherwise subcomponents based on selection. Note that
-     * the template will update the tool box after a successful response.
-     * @return String representing a call to the fragment that will create the blockly block list of those blocks
-     */
-    @RequestMapping(value = "/blockDefinitionsForChildren", method = RequestMethod.GET)
-    public String getBlockDefinitionsForChildren(Model model) {
-        System.out.println("In getBlockDefinitionsForChildren");
-        if (selectedBlockType == null || selectedBlockType.equals("OPINION")){
-            List<BlockDefinition> list = new ArrayList<BlockDefinition>();
-            for(BlockDefinition s : getReports()) {
-                list.add(s);
-            }
-            model.addAttribute("childrenBlocks", list);
-            return "results :: blockDefinitionsForChildrenList";
-        }
-
-        for(BlockDefinition s : getBlockDefinitions()) {
-            if (s.getType().equals(selectedBlockType)){
-                List<BlockDefinition> result = s.getBlocks(false); // allTheWayDown = false -> only immediate children
-                model.addAttribute("childrenBlocks", result);
-                return "results :: blockDefinitionsForChildrenList";
-            }
-
-        }
-        model.addAttribute("childrenBlocks", new ArrayList<BlockDefinition>());
-        //referring to a fragment named blockDefinitionsForChildrenList which is located in the results page
-        return "results :: blockDefinitionsForChildrenList";
-    }
-
-
-
-    @PostMapping("/blocksFromDomainConcepts")
-    public @ResponseBody Map<String, List> getBlocksFromDomainConcepts(Model model) {
-        System.out.println("In getBlocksFromDomainConcepts");
-        Iterable<DomainConcept> DCs = domainConceptService.getAllDomainConcepts();
-
-        //put Block JS in a list
-        List<String> DCScriptList = new ArrayList<>();
-        //put Block names in a list (names also represents type of the block)
-        List<String> DCNameList = new ArrayList<>();
-        List<String> DCTypeList = new ArrayList<>();
-        for(DomainConcept dc : DCs) {
-            DCScriptList.add(dc.getScript());
-            DCNameList.add(dc.getName());
-            DCTypeList.add(dc.getType());
-        }
-        Map<String, List> messageObject = new HashMap<>();
-        messageObject.put("scripts", DCScriptList);
-        messageObject.put("names", DCNameList);
-        messageObject.put("types", DCTypeList);
-        System.out.println(messageObject);
-
-        return messageObject;
-    }
-
     /**
-     * Updates selectedBlockType
-     * @return the updated type in the form of a message object {'type': type}
+     * Scripts, names and types of the domain concept blocks, with the version of the domain concepts.
+     * With since, only what was added, updated (lists of id, name, type and script) and deleted (ids) after that
+     * version. The ETag is the version, so an unchanged list is answered with 304.
      */
-    @PostMapping("/updateBlocks")
-    public @ResponseBody Map<String, String> onUpdateBlocks(@RequestBody String type) {
-        System.out.println("this is type: " + type);
-        selectedBlockType = type;
-
-        final Map<String, String> messageObject = new HashMap<>();
-        messageObject.put("type", type);
-
-        return messageObject;
-    }
-
-
-    private String rawxml, rdf, filestring;
-
-
-    //private String assemblerfile = "data-dataset.ttl";
-    void onSuccessFromRDFForm(Dossier dossier) {
-        org.apache.jena.rdf.model.Model model = getModelFromXML();
-        StringWriter out = new StringWriter();
-        model.write(out, "TURTLE");
-        rdf = out.toString();
-        System.out.println("this is rdf: " + rdf);
-        //TO DO: add code to render RDF in rdfArea
-        //ajaxResponseRenderer.addRender(rdfArea);
-
-        // Save Blocks in RDF format
-        try {
-            // rawxml is already set using getModelFromXML();
-            String thexml = rawxml;
-            thexml = thexml.replaceAll("\r", "").replaceAll("\n", "");
-
-            dossier.setXML(thexml);
-            //save dossier to database
-            dossierService.saveDossier(dossier);
-
-            // Ch: We have to make a copy of the assembler file...
-            // A: because? no idea but ok let's do it
-            File f = File.createTempFile("output", ".ttl");
-            FileUtils.copyInputStreamToFile(Resources.getResource("static/data-dataset.ttl").openStream(), f);
-            System.out.println("this is f: " + f.toString());
-
-            Dataset dataset = TDB2Factory.assembleDataset(f.getAbsolutePath());
-            dataset.begin(ReadWrite.WRITE);
-
-            try {
-
-                String URI = "<http://wise10.vub.ac.be/resource/dossier/" + dossier.getId() + ">";
-                org.apache.jena.rdf.model.Model output = dataset.getNamedModel(URI);
-                output.removeAll();
-                output.add(model);
-                dataset.commit();
-            } finally {
-                dataset.end();
+    @GetMapping("/blocksFromDomainConcepts")
+    public ResponseEntity<Map<String, Object>> getBlocksFromDomainConcepts(
+            @RequestParam(value = "since", required = false) Long since, WebRequest webRequest) {
+        DomainConceptChanges changes = domainConceptService.getDomainConceptChanges(since);
+        String eTag = "\"" + changes.getVersion() + (changes.isFull() ? "" : "-" + since) + "\"";
+        if (webRequest.checkNotModified(eTag))
+            return null;
+
+        Map<String, Object> messageObject = new HashMap<>();
+        messageObject.put("version", changes.getVersion());
+        messageObject.put("full", changes.isFull());
+        if (changes.isFull()) {
+            //put Block ids, JS, names (names also represents type of the block) and types in parallel lists
+            List<Long> DCIdList = new ArrayList<>();
+            List<String> DCScriptList = new ArrayList<>();
+            List<String> DCNameList = new ArrayList<>();
+            List<String> DCTypeList = new ArrayList<>();
+            for (DomainConcept dc : changes.getAdded()) {
+                DCIdList.add(dc.getId());
+                DCScriptList.add(dc.getScript());
+                DCNameList.add(dc.getName());
+                DCTypeList.add(dc.getType());
             }
-        } catch (Exception e) {
-            System.out.println("Problem loading ontology: " + e.getMessage());
+            messageObject.put("ids", DCIdList);
+            messageObject.put("scripts", DCScriptList);
+            messageObject.put("names", DCNameList);
+            messageObject.put("types", DCTypeList);
+        } else {
+            messageObject.put("added", blocks(changes.getAdded()));
+            messageObject.put("updated", blocks(changes.getUpdated()));
+            messageObject.put("deleted", changes.getDeleted());
         }
-
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(messageObject);
     }
 
-    private org.apache.jena.rdf.model.Model getModelFromXML() {
-        System.out.println("this is rawxml: " + rawxml);
-        org.apache.jena.rdf.model.Model m = ModelFactory.createDefaultModel();
-
-        rawxml = rawxml.replace("xmlns=\"http://www.w3.org/1999/xhtml\"", "");
-
-
-        try {
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Source xslt = new StreamSource(Resources.getResource("static/transform.xslt").openStream());
-            Transformer transformer = factory.newTransformer(xslt);
-            Source text = new StreamSource(new ByteArrayInputStream(rawxml.getBytes("UTF-8")));
-            File output = File.createTempFile("output", ".rdf");
-            filestring = output.getAbsolutePath();
-            transformer.transform(text, new StreamResult(output));
-
-            RDFDataMgr.read(m, new FileInputStream(output), Lang.RDFXML);
-
-            // THE XML DOESN'T KEEP TRACK OF TYPES AND THESE ARE THUS ALSO NOT APPEARING
-            // IN THE RDF/XML. MANUALLY REPLACE TRIPLES WITH THEIR "TYPED" VERSIONS
-            StmtIterator iter = m.listStatements();
-            List<Statement> toAdd = new ArrayList<Statement>();
-            List<Statement> toRemove = new ArrayList<Statement>();
-            while(iter.hasNext()) {
-                Statement s = iter.next();
-                if(s.getObject().isLiteral()) {
-                    Resource type = getTypeOfProperty(s.getPredicate());
-                    if(type != null) {
-                        toAdd.add(m.createStatement(
-                                s.getSubject(),
-                                s.getPredicate(),
-                                m.createTypedLiteral(s.getObject().asLiteral().getValue(), type.getURI())));
-                        toRemove.add(s);
-                    }
-                }
-            }
-            m.add(toAdd);
-            m.remove(toRemove);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Problem processing XML: " + e.getMessage());
+    private static List<Map<String, Object>> blocks(List<DomainConcept> domainConcepts) {
+        List<Map<String, Object>> blocks = new ArrayList<>();
+        for (DomainConcept dc : domainConcepts) {
+            Map<String, Object> block = new HashMap<>();
+            block.put("id", dc.getId());
+            block.put("name", dc.getName());
+            block.put("type", dc.getType());
+            block.put("script", dc.getScript());
+            blocks.add(block);
         }
-        System.out.println("this is m: " + m.toString());
-        return m;
-    }
-
-    //should be fine...
-    private Resource getTypeOfProperty(Resource property) {
-        Statement s = ontology.getProperty(property, RDFS.range);
-        if(s != null) return s.getObject().asResource();
-        return null;
+        return blocks;
     }
 
     /**
@@ -375,6 +241,8 @@ public class DossierController {
     public String deleteDossier(@PathVariable (value = "id") long id){
         //call delete dossier method
         this.dossierService.deleteDossierById(id);
+        //its graph and search documents are removed in the background
+        rdfMaterializer.delete(id);
         return  "redirect:/";
     }
 
@@ -389,14 +257,26 @@ public class DossierController {
     }*/
 
     /**
-     * Get both dossiers and domain concept services for index page
+     * Get a page of dossiers and of domain concepts for index page, only id, name, url (and type) are loaded.
+     * Paging, sorting and name filter of both lists are request parameters: dossier_page, dossier_size,
+     * dossier_sort=name,asc, dossier_name and the same with concept_
      * @param model
      * @return
      */
     @GetMapping(path="/")
-    public String listDossier(Model model) {
-        model.addAttribute("listDossier", dossierService.getAllDossiers());
-        model.addAttribute("listDomainConcept", domainConceptService.getAllDomainConcepts());
+    public String listDossier(Model model,
+                              @Qualifier("dossier") @PageableDefault(size = 25, sort = "name") Pageable dossierPage,
+                              @RequestParam(value = "dossier_name", defaultValue = "") String dossierName,
+                              @Qualifier("concept") @PageableDefault(size = 25, sort = "name") Pageable conceptPage,
+                              @RequestParam(value = "concept_name", defaultValue = "") String conceptName) {
+        dossierPage = sortable(dossierPage, DOSSIER_SORTS);
+        conceptPage = sortable(conceptPage, CONCEPT_SORTS);
+        model.addAttribute("listDossier", dossierService.getDossierSummaries(dossierName, dossierPage));
+        model.addAttribute("dossierName", dossierName);
+        model.addAttribute("dossierSort", sortParameter(dossierPage.getSort()));
+        model.addAttribute("listDomainConcept", domainConceptService.getDomainConceptSummaries(conceptName, conceptPage));
+        model.addAttribute("conceptName", conceptName);
+        model.addAttribute("conceptSort", sortParameter(conceptPage.getSort()));
         //create model attribute to bind add dossier form data
         Dossier dossier = new Dossier();
         model.addAttribute("dossier", dossier);
@@ -405,6 +285,23 @@ public class DossierController {
         return "index";
     }
 
+    //sorting on other columns than those of the list is not allowed, sort by name instead
+    private static Pageable sortable(Pageable pageable, List<String> columns) {
+        if (pageable.getSort().isUnsorted())
+            return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("name"));
+        for (Sort.Order order : pageable.getSort()) {
+            if (!columns.contains(order.getProperty()))
+                return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("name"));
+        }
+        return pageable;
+    }
+
+    //the sort as request parameter, eg. name,asc
+    private static String sortParameter(Sort sort) {
+        Sort.Order order = sort.iterator().next();
+        return order.getProperty() + "," + order.getDirection().name().toLowerCase();
+    }
+
 
     @PostMapping("/saveDomainConcept")
     public String saveDomainConcept(@ModelAttribute("domainConcept") DomainConcept domainConcept){
@@ -530,39 +427,9 @@ public class DossierController {
         //set domain concept as a model attribute to pre-populate the form
         model.addAttribute("domainConcept", domainConcept);
 
-        //load the ontology
-        try{
-            ontology = ModelFactory.createDefaultModel();
-            RDFDataMgr.read(ontology, "static/ontologie.ttl", Lang.TURTLE);
-            System.out.println("Ontology loaded");
-
-        } catch (Exception e){
-            System.out.println("Problem loading ontology:" + e);
-        }
-        //get blocks from RDFS => used for populating the "composed of" dropdown
-        List<String> blockNames = new ArrayList<>();
-
-        //first get reports then the blocks the report is consisting of
-        for(BlockDefinition s : getReports()) {
-            blockNames.add(s.getName());
-            List<BlockDefinition> result = s.getBlocks(true);
-            for(BlockDefinition bd : result) {
-                System.out.println("Ontology loaded34 bd: " + bd.getOutputType());
-                System.out.println("Ontology loaded34 bd msg: " + bd.getMessage());
-                blockNames.add(bd.getMessage()); // used msg here instead of name because getName did not work for some reason...
-            }
-        }
-
-        //get the created domain concepts as well
-        Iterable<DomainConcept> DCs = domainConceptService.getAllDomainConcepts();
-        //put Block names in a list (names also represents type of the block)
-        for(DomainConcept dc : DCs) {
-            blockNames.add(dc.getName());
-        }
-
-
-        model.addAttribute("blockNames", blockNames);
-        System.out.println("in model domain: " + blockNames);
+        //blocks from RDFS and the created domain concepts => used for populating the "composed of" dropdown,
+        //kept per ontology and domain concept version by the SuggestService
+        model.addAttribute("blockNames", suggestService.getComposedOfNames());
 
 
         return "update_domain_concept";
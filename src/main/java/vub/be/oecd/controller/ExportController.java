@@ -0,0 +1,44 @@
+package vub.be.oecd.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import vub.be.oecd.service.DatasetExporter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Download of all dossier graphs, format=nquads (default) or turtle, see DatasetExporter.
+ * Written on the request thread, a large dataset must not be cut off by spring.mvc.async.request-timeout.
+ */
+@Controller
+public class ExportController {
+
+    @Autowired
+    private DatasetExporter datasetExporter;
+
+    @GetMapping("/export")
+    public void export(@RequestParam(value = "format", defaultValue = "nquads") String formatName,
+                       HttpServletResponse response) throws IOException {
+        DatasetExporter.Format format;
+        try {
+            format = DatasetExporter.Format.valueOf(formatName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Unknown format " + formatName + ", use nquads or turtle");
+            return;
+        }
+        String fileName = "dossiers-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + format.getExtension();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentType("application/gzip");
+        datasetExporter.export(format, response.getOutputStream());
+    }
+}
@@ -0,0 +1,35 @@
+package vub.be.oecd.controller;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import vub.be.oecd.service.DossierTextIndex;
+
+import java.io.IOException;
+
+/**
+ * Full-text search over the literals of the dossiers, JSON only.
+ * The query uses the Lucene syntax, fields: dossier, report, predicate, value (default) and every predicate,
+ * eg. /search?q=Chemical_names:resorcinol or /search?q=report:Acute_Toxicity AND hacat
+ */
+@Controller
+public class SearchController {
+
+    @Autowired
+    private DossierTextIndex dossierTextIndex;
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "limit", defaultValue = "20") int limit) throws IOException {
+        try {
+            return ResponseEntity.ok(dossierTextIndex.search(query, limit));
+        } catch (ParseException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package vub.be.oecd.controller;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import vub.be.oecd.service.SparqlService;
+
+/**
+ * SPARQL query endpoint (read only) over the dossier graphs and the ontology.
+ * The query is given as query parameter, form field or application/sparql-query body, the result format
+ * with format=json|csv|ntriples or the Accept header.
+ */
+@Controller
+public class SparqlController {
+
+    @Autowired
+    private SparqlService sparqlService;
+
+    @GetMapping("/sparql")
+    public ResponseEntity<?> query(@RequestParam("query") String query,
+                                   @RequestParam(value = "format", required = false) String format,
+                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return execute(query, format, accept);
+    }
+
+    @PostMapping(value = "/sparql", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<?> queryFromForm(@RequestParam("query") String query,
+                                           @RequestParam(value = "format", required = false) String format,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return execute(query, format, accept);
+    }
+
+    @PostMapping(value = "/sparql", consumes = "application/sparql-query")
+    public ResponseEntity<?> queryFromBody(@RequestBody String query,
+                                           @RequestParam(value = "format", required = false) String format,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return execute(query, format, accept);
+    }
+
+    private ResponseEntity<?> execute(String queryString, String formatName, String accept) {
+        Query query;
+        try {
+            query = sparqlService.parse(queryString);
+        } catch (QueryParseException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        SparqlService.Format requested = requestedFormat(formatName, accept);
+        SparqlService.Format format = sparqlService.format(query, requested);
+        if (format == null || (formatName != null && requested == null))
+            return error(HttpStatus.NOT_ACCEPTABLE, "Format not supported for this query type");
+
+        if (!sparqlService.tryAcquire())
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5")
+                    .contentType(MediaType.TEXT_PLAIN).body("Too many queries running, try again later");
+        StreamingResponseBody body = out -> {
+            try {
+                sparqlService.execute(query, format, out);
+            } finally {
+                sparqlService.release();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .body(body);
+    }
+
+    //format parameter first, then the Accept header, null for the default (or an unknown format parameter)
+    private static SparqlService.Format requestedFormat(String formatName, String accept) {
+        if (formatName != null) {
+            for (SparqlService.Format format : SparqlService.Format.values())
+                if (format.name().equalsIgnoreCase(formatName))
+                    return format;
+            return null;
+        }
+        if (accept != null) {
+            for (SparqlService.Format format : SparqlService.Format.values())
+                if (accept.contains(format.getContentType()))
+                    return format;
+        }
+        return null;
+    }
+
+    private static ResponseEntity<String> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(message);
+    }
+}
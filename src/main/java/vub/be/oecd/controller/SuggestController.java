@@ -0,0 +1,28 @@
+package vub.be.oecd.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import vub.be.oecd.model.Suggestion;
+import vub.be.oecd.service.SuggestService;
+
+import java.util.List;
+
+/**
+ * Typeahead for block names, ontology labels and domain concepts, JSON only,
+ * eg. /suggest?q=cell li finds the cell_line property
+ */
+@Controller
+public class SuggestController {
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(@RequestParam("q") String query,
+                                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(suggestService.suggest(query, limit));
+    }
+}
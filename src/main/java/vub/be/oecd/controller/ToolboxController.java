@@ -0,0 +1,91 @@
+package vub.be.oecd.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import vub.be.oecd.model.BlockDefinition;
+import vub.be.oecd.model.OntologySnapshot;
+import vub.be.oecd.service.OntologyRegistry;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The blocks for the "components" part of the tool box of the dossier editor, for the selected block type,
+ * and the dropdown options of the fields.
+ * Everything is in the request, so editors do not see each other's selection. The answer only depends on the
+ * request parameters and the ontology version: with v (the ontology version of the page) it can be cached for good,
+ * without it is revalidated with the ontology version as ETag.
+ */
+@Controller
+public class ToolboxController {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    /**
+     * @param type selected block type, reports for OPINION or no type, only immediate children otherwise
+     * @return the fragment with the blocks, to put in the toolbox XML
+     */
+    @GetMapping("/toolbox/children")
+    public String getChildren(@RequestParam(value = "type", required = false) String type,
+                              @RequestParam(value = "v", required = false) String ontologyVersion,
+                              WebRequest webRequest, HttpServletResponse response, Model model) {
+        OntologySnapshot snapshot = ontologyRegistry.getSnapshot();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(snapshot, ontologyVersion));
+        if (webRequest.checkNotModified(eTag(snapshot)))
+            return null;
+        model.addAttribute("childrenBlocks", snapshot.getCatalog().getChildren(type));
+        //referring to a fragment named blockDefinitionsForChildrenList which is located in the results page
+        return "results :: blockDefinitionsForChildrenList";
+    }
+
+    /**
+     * @return the block types of the children as JSON
+     */
+    @GetMapping(value = "/toolbox/children", params = "format=json")
+    public ResponseEntity<List<String>> getChildTypes(@RequestParam(value = "type", required = false) String type,
+                                                      @RequestParam(value = "v", required = false) String ontologyVersion) {
+        OntologySnapshot snapshot = ontologyRegistry.getSnapshot();
+        List<String> types = new ArrayList<>();
+        for (BlockDefinition blockDefinition : snapshot.getCatalog().getChildren(type))
+            types.add(blockDefinition.getType());
+        //the ETag is checked by spring, a matching If-None-Match results in 304 without body
+        return ResponseEntity.ok()
+                .eTag(eTag(snapshot))
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl(snapshot, ontologyVersion))
+                .body(types);
+    }
+
+    /**
+     * @return the dropdown options of every predicate (predicate URI to option labels) as JSON
+     */
+    @GetMapping("/toolbox/dropdown-options")
+    public ResponseEntity<Map<String, List<String>>> getDropdownOptions(
+            @RequestParam(value = "v", required = false) String ontologyVersion) {
+        OntologySnapshot snapshot = ontologyRegistry.getSnapshot();
+        return ResponseEntity.ok()
+                .eTag(eTag(snapshot))
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl(snapshot, ontologyVersion))
+                .body(snapshot.getDropdownOptions().asMap());
+    }
+
+    private static String eTag(OntologySnapshot snapshot) {
+        return "\"" + snapshot.getVersion() + "\"";
+    }
+
+    //a page of an older ontology version asks for the current blocks, those are not cached for good
+    private static String cacheControl(OntologySnapshot snapshot, String ontologyVersion) {
+        return snapshot.getVersion().equals(ontologyVersion) ? IMMUTABLE : CacheControl.noCache().getHeaderValue();
+    }
+}
@@ -0,0 +1,44 @@
+package vub.be.oecd.model;
+
+/**
+ * The generated JavaScript defining all Blockly blocks of one ontology version,
+ * kept in memory as plain and as gzipped bytes so it can be served without rendering.
+ */
+public class BlockBundle {
+
+    private final String ontologyVersion;
+    private final byte[] content;
+    private final byte[] gzippedContent;
+
+    public BlockBundle(String ontologyVersion, byte[] content, byte[] gzippedContent) {
+        this.ontologyVersion = ontologyVersion;
+        this.content = content;
+        this.gzippedContent = gzippedContent;
+    }
+
+    public String getOntologyVersion() {
+        return ontologyVersion;
+    }
+
+    /**
+     * @return strong ETag, the content only depends on the ontology version
+     */
+    public String getETag() {
+        return "\"blocks-" + ontologyVersion + "\"";
+    }
+
+    /**
+     * @return strong ETag of the gzipped content, other bytes than the plain content so another tag
+     */
+    public String getGzippedETag() {
+        return "\"blocks-" + ontologyVersion + "-gz\"";
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public byte[] getGzippedContent() {
+        return gzippedContent;
+    }
+}
@@ -0,0 +1,114 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+import vub.be.oecd.util.OECDVariables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All block definitions of one ontology version, built once when the ontology is loaded.
+ * Holds the flat list of blocks (reports followed by all their sub blocks, same order as before),
+ * an index by block type and the immediate children of every block, so the toolbox
+ * does not have to walk the ontology on every click.
+ */
+public class BlockCatalog {
+
+    private final List<BlockDefinition> reports;
+    private final List<BlockDefinition> blockDefinitions;
+    private final Map<String, BlockDefinition> byType;
+    private final Map<String, List<BlockDefinition>> children;
+    private final String reportsAsList;
+
+    private BlockCatalog(List<BlockDefinition> reports, List<BlockDefinition> blockDefinitions,
+                         Map<String, BlockDefinition> byType, Map<String, List<BlockDefinition>> children) {
+        this.reports = Collections.unmodifiableList(reports);
+        this.blockDefinitions = Collections.unmodifiableList(blockDefinitions);
+        this.byType = Collections.unmodifiableMap(byType);
+        this.children = Collections.unmodifiableMap(children);
+
+        List<String> x = new ArrayList<String>();
+        for(BlockDefinition s : reports)
+            x.add("\"" + s.getType() + "\"");
+        this.reportsAsList = x.toString();
+    }
+
+    /**
+     * Walks the ontology once and materializes every block definition
+     * @param ontology the (read only) ontology model
+     * @return the catalog
+     */
+    public static BlockCatalog build(Model ontology) {
+        return build(ontology, DropdownOptions.build(ontology));
+    }
+
+    /**
+     * @param dropdownOptions the dropdown options of the same ontology version
+     */
+    public static BlockCatalog build(Model ontology, DropdownOptions dropdownOptions) {
+        List<BlockDefinition> reports = new ArrayList<BlockDefinition>();
+        List<BlockDefinition> all = new ArrayList<BlockDefinition>();
+        Map<String, BlockDefinition> byType = new HashMap<String, BlockDefinition>();
+        Map<String, List<BlockDefinition>> children = new HashMap<String, List<BlockDefinition>>();
+        FieldDescriptors fields = new FieldDescriptors(dropdownOptions);
+
+        StmtIterator iter = ontology.listStatements(null, RDFS.subClassOf, OECDVariables.REPORT);
+        while(iter.hasNext()) {
+            Resource r = iter.next().getSubject();
+            BlockDefinition report = new ReportBlockDefinition(r, fields);
+            reports.add(report);
+            addBlock(report, all, byType, children);
+        }
+        return new BlockCatalog(reports, all, byType, children);
+    }
+
+    //depth first, so "all" has the same order as report + report.getBlocks(true)
+    private static void addBlock(BlockDefinition block, List<BlockDefinition> all,
+                                 Map<String, BlockDefinition> byType, Map<String, List<BlockDefinition>> children) {
+        all.add(block);
+        List<BlockDefinition> immediate = block.getBlocks(false);
+        //first definition of a type wins, like the linear search did before
+        if(!byType.containsKey(block.getType())) {
+            byType.put(block.getType(), block);
+            children.put(block.getType(), Collections.unmodifiableList(immediate));
+        }
+        for(BlockDefinition child : immediate)
+            addBlock(child, all, byType, children);
+    }
+
+    public List<BlockDefinition> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return every report followed by all of its sub blocks
+     */
+    public List<BlockDefinition> getBlockDefinitions() {
+        return blockDefinitions;
+    }
+
+    public BlockDefinition getBlockDefinition(String type) {
+        return byType.get(type);
+    }
+
+    /**
+     * Immediate children of a block type, the reports for the OPINION block (or no selection)
+     * @return the children, empty when the type is unknown
+     */
+    public List<BlockDefinition> getChildren(String type) {
+        if(type == null || type.equals("OPINION"))
+            return reports;
+        List<BlockDefinition> result = children.get(type);
+        return result != null ? result : Collections.<BlockDefinition>emptyList();
+    }
+
+    public String getReportsAsList() {
+        return reportsAsList;
+    }
+}
@@ -15,14 +15,31 @@ public class BlockDefinition {
 
     protected Resource resource;
     protected BlockDefinition parent;
+    //shared by all blocks of the same ontology version
+    protected FieldDescriptors fields;
+
+    //resolved once, the ontology snapshot a definition is created from never changes
+    private final String message;
+    private final String type;
 
     public BlockDefinition(Resource resource) {
-        this.resource = resource;
+        this(resource, new FieldDescriptors());
+    }
+
+    public BlockDefinition(Resource resource, FieldDescriptors fields) {
+        this(resource, null, fields);
     }
 
     public BlockDefinition(Resource resource, BlockDefinition parent) {
+        this(resource, parent, parent.fields);
+    }
+
+    private BlockDefinition(Resource resource, BlockDefinition parent, FieldDescriptors fields) {
         this.resource = resource;
         this.parent = parent;
+        this.fields = fields;
+        this.message = resource.hasProperty(RDFS.label) ? resource.getProperty(RDFS.label).getString() : resource.getLocalName();
+        this.type = resource.getURI() == null ? parent.getType() + "-" + message : resource.getURI();
     }
 
     public List<BlockDefinition> getBlocks() {
@@ -43,9 +60,7 @@ public class BlockDefinition {
     }
 
     public String getType() {
-        if(resource.getURI() == null)
-            return parent.getType() + "-" + getMessage();
-        return resource.getURI().toString();
+        return type;
     }
 
     public String getName() {
@@ -54,9 +69,7 @@ public class BlockDefinition {
     }
 
     public String getMessage() {
-        if(resource.hasProperty(RDFS.label))
-            return resource.getProperty(RDFS.label).getString();
-        return resource.getLocalName();
+        return message;
     }
 
     public List<Attribute> getAttributes() {
@@ -88,7 +101,7 @@ public class BlockDefinition {
             if(attributeGroups.contains(resource)) {
                 list.add(new GroupAttribute(resource, new BlockDefinition(resource, this).getType(), num++));
             } else {
-                list.add(new SimpleAttribute(resource, num++));
+                list.add(new SimpleAttribute(resource, num++, fields));
             }
         }
 
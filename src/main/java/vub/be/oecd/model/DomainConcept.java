@@ -1,9 +1,11 @@
 package vub.be.oecd.model;
 
+import vub.be.oecd.util.GzipStringConverter;
+
 import javax.persistence.*;
 
 @Entity
-@Table(name = "domain_concept")
+@Table(name = "domain_concept", indexes = @Index(name = "idx_domain_concept_name", columnList = "name"))
 public class DomainConcept {
 
     @Id
@@ -15,9 +17,21 @@ public class DomainConcept {
     private String type;
     private String url;
     //XML stores the values selected by the user for in the domain concept block in the main workspace
+    //gzip compressed, XML and script are only loaded when used (together)
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = GzipStringConverter.class)
+    @Column(columnDefinition = "longblob")
     private String XML;
     //JS stores the JavaScript code to generate the created domain concept block (should be used in manage dossiers)
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = GzipStringConverter.class)
+    @Column(columnDefinition = "longblob")
     private String script;
+    //domain_concept version stamp of the last change and of the creation, null for concepts from before the stamps
+    private Long version;
+    private Long createdVersion;
 
     public Long getId() {
         return id;
@@ -66,4 +80,20 @@ public class DomainConcept {
     public void setScript(String script) {
         this.script = script;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getCreatedVersion() {
+        return createdVersion;
+    }
+
+    public void setCreatedVersion(Long createdVersion) {
+        this.createdVersion = createdVersion;
+    }
 }
@@ -0,0 +1,51 @@
+package vub.be.oecd.model;
+
+import java.util.List;
+
+/**
+ * The domain concepts at a version of the domain_concept version stamp: all of them,
+ * or what was added, updated and deleted since an older version
+ */
+public class DomainConceptChanges {
+
+    private final long version;
+    private final boolean full;
+    private final List<DomainConcept> added;
+    private final List<DomainConcept> updated;
+    private final List<Long> deleted;
+
+    public DomainConceptChanges(long version, boolean full, List<DomainConcept> added, List<DomainConcept> updated,
+                                List<Long> deleted) {
+        this.version = version;
+        this.full = full;
+        this.added = added;
+        this.updated = updated;
+        this.deleted = deleted;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if added holds all concepts, the client has to drop what it had
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    public List<DomainConcept> getAdded() {
+        return added;
+    }
+
+    public List<DomainConcept> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return ids of the deleted concepts
+     */
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,15 @@
+package vub.be.oecd.model;
+
+/**
+ * Projection of a domain concept for lists, without its XML and script
+ */
+public interface DomainConceptSummary {
+
+    Long getId();
+
+    String getName();
+
+    String getUrl();
+
+    String getType();
+}
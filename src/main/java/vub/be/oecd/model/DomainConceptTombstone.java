@@ -0,0 +1,43 @@
+package vub.be.oecd.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A deleted domain concept, with the domain_concept version stamp of the delete,
+ * so clients that ask for the changes since an older version learn about it
+ */
+@Entity
+@Table(name = "domain_concept_tombstone")
+public class DomainConceptTombstone {
+
+    @Id
+    private Long id;
+
+    private long version;
+
+    public DomainConceptTombstone() {
+    }
+
+    public DomainConceptTombstone(Long id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -1,17 +1,31 @@
 package vub.be.oecd.model;
 
+import vub.be.oecd.util.GzipStringConverter;
+
 import javax.persistence.*;
 
 @Entity
-@Table(name = "dossier")
+@Table(name = "dossier", indexes = @Index(name = "idx_dossier_name", columnList = "name"))
 public class Dossier {
 
+    //ids handed out per block by Hibernate, the next block is kept in id_generator (see DossierServiceImpl)
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    //a table generator instead of IDENTITY, so Hibernate can batch the inserts (eg. of an import)
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "dossier_ids")
+    @TableGenerator(name = "dossier_ids", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "dossier", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
     private String url;
+
+    //gzip compressed, only loaded when used
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = GzipStringConverter.class)
+    @Column(columnDefinition = "longblob")
     private String XML;
 
     public Long getId() {
@@ -0,0 +1,13 @@
+package vub.be.oecd.model;
+
+/**
+ * Projection of a dossier for lists, without its XML
+ */
+public interface DossierSummary {
+
+    Long getId();
+
+    String getName();
+
+    String getUrl();
+}
@@ -0,0 +1,75 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+import vub.be.oecd.util.OECDVariables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The dropdown options (rdfs:labels of the option_group values) of every predicate, built once per ontology version.
+ * The FieldDescriptors of the blocks take their options from here and /toolbox/dropdown-options serves the whole map.
+ */
+public class DropdownOptions {
+
+    private final Map<String, List<String>> byPredicate;
+
+    private DropdownOptions(Map<String, List<String>> byPredicate) {
+        this.byPredicate = Collections.unmodifiableMap(byPredicate);
+    }
+
+    /**
+     * @param ontology the (read only) ontology model
+     */
+    public static DropdownOptions build(Model ontology) {
+        Map<String, List<String>> byPredicate = new TreeMap<String, List<String>>();
+        ResIterator predicates = ontology.listSubjectsWithProperty(OECDVariables.OPTION_GROUP);
+        try {
+            while(predicates.hasNext()) {
+                Resource predicate = predicates.next();
+                if(predicate.isURIResource())
+                    byPredicate.put(predicate.getURI(), Collections.unmodifiableList(optionsOf(predicate)));
+            }
+        } finally {
+            predicates.close();
+        }
+        return new DropdownOptions(byPredicate);
+    }
+
+    /**
+     * @return the labels of the option_group values of one predicate, in the order of the ontology model
+     */
+    public static List<String> optionsOf(Resource predicate) {
+        List<String> options = new ArrayList<String>();
+        StmtIterator iter = predicate.listProperties(OECDVariables.OPTION_GROUP);
+        while(iter.hasNext()) {
+            Statement option = iter.next().getObject().asResource().getProperty(RDFS.label);
+            if(option != null)
+                options.add(option.getString());
+        }
+        return options;
+    }
+
+    /**
+     * @return the options of the predicate, empty when it has none
+     */
+    public List<String> get(String predicate) {
+        List<String> options = byPredicate.get(predicate);
+        return options != null ? options : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return options by predicate URI, unmodifiable
+     */
+    public Map<String, List<String>> asMap() {
+        return byPredicate;
+    }
+}
@@ -0,0 +1,83 @@
+package vub.be.oecd.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything needed to render the Blockly field of a predicate, resolved once from the ontology
+ * (see FieldDescriptors). Immutable, rendering only reads the fields.
+ */
+public class FieldDescriptor {
+
+    private final String name;
+    private final String label;
+    private final String type;
+    private final Integer precision;
+    private final Integer min;
+    private final List<String> options;
+    private final String otherAttributes;
+
+    public FieldDescriptor(String name, String label, String type, Integer precision, Integer min, List<String> options) {
+        this.name = name;
+        this.label = label;
+        this.type = type;
+        this.precision = precision;
+        this.min = min;
+        this.options = options == null ? null : Collections.unmodifiableList(new ArrayList<String>(options));
+        this.otherAttributes = buildOtherAttributes();
+    }
+
+    //extra json properties of the field, eg. , "precision": 1, "min": 1
+    private String buildOtherAttributes() {
+        StringBuilder sb = new StringBuilder();
+        if(precision != null)
+            sb.append(", \"precision\": ").append(precision);
+        if(min != null)
+            sb.append(", \"min\": ").append(min);
+        if(options != null) {
+            List<String> x = new ArrayList<String>();
+            for(String option : options)
+                x.add("['" + option + "', '" + option + "']");
+            sb.append(", \"options\": ").append(x);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the predicate URI, used as name of the field
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the blockly field type, eg. field_input, field_number, field_dropdown
+     */
+    public String getType() {
+        return type;
+    }
+
+    public Integer getPrecision() {
+        return precision;
+    }
+
+    public Integer getMin() {
+        return min;
+    }
+
+    /**
+     * @return the dropdown options, null if the field is not a dropdown
+     */
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public String getOtherAttributes() {
+        return otherAttributes;
+    }
+}
@@ -0,0 +1,110 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves predicates into FieldDescriptors, each predicate only once.
+ * One instance is shared by all block definitions of an ontology version (see BlockCatalog),
+ * dropdowns take their options from the DropdownOptions of that version.
+ */
+public class FieldDescriptors {
+
+    /**
+     * Blockly field for a range of a predicate
+     */
+    private static class Field {
+        final String type;
+        final Integer precision;
+        final Integer min;
+        final boolean dropdown;
+
+        Field(String type, Integer precision, Integer min, boolean dropdown) {
+            this.type = type;
+            this.precision = precision;
+            this.min = min;
+            this.dropdown = dropdown;
+        }
+    }
+
+    //corresponds to blockly type for text input: https://developers.google.com/blockly/guides/create-custom-blocks/fields/built-in-fields/text-input!
+    private static final Field INPUT = new Field("field_input", null, null, false);
+
+    private static final Map<Resource, Field> BY_RANGE = new HashMap<Resource, Field>();
+    //ranges that are not xsd types, matched on part of the URI (eg. xsd:colour, xsd:dropdown)
+    private static final Map<String, Field> BY_RANGE_NAME = new LinkedHashMap<String, Field>();
+
+    static {
+        BY_RANGE.put(XSD.dateTime, new Field("field_date", null, null, false));
+        BY_RANGE.put(XSD.xboolean, new Field("field_checkbox", null, null, false));
+        BY_RANGE.put(XSD.integer, new Field("field_number", 1, null, false));
+        BY_RANGE.put(XSD.xint, new Field("field_number", 1, null, false));
+        BY_RANGE.put(XSD.xdouble, new Field("field_number", null, null, false));
+        BY_RANGE.put(XSD.positiveInteger, new Field("field_number", 1, 1, false));
+        BY_RANGE.put(XSD.xlong, new Field("field_number", 1, null, false));
+        BY_RANGE.put(XSD.xfloat, new Field("field_number", null, null, false));
+        BY_RANGE.put(XSD.anyURI, INPUT);
+
+        BY_RANGE_NAME.put("colour", new Field("field_colour", null, null, false));
+        BY_RANGE_NAME.put("angle", new Field("field_angle", null, null, false));
+        BY_RANGE_NAME.put("dropdown", new Field("field_dropdown", null, null, true));
+    }
+
+    private final Map<Resource, FieldDescriptor> descriptors = new ConcurrentHashMap<Resource, FieldDescriptor>();
+
+    //null: the options are read from the predicate itself
+    private final DropdownOptions dropdownOptions;
+
+    public FieldDescriptors() {
+        this(null);
+    }
+
+    public FieldDescriptors(DropdownOptions dropdownOptions) {
+        this.dropdownOptions = dropdownOptions;
+    }
+
+    /**
+     * @param predicate the predicate of a SimpleAttribute
+     * @return the descriptor, resolved on first use
+     */
+    public FieldDescriptor get(Resource predicate) {
+        FieldDescriptor descriptor = descriptors.get(predicate);
+        if(descriptor == null) {
+            descriptor = resolve(predicate);
+            descriptors.put(predicate, descriptor);
+        }
+        return descriptor;
+    }
+
+    private FieldDescriptor resolve(Resource predicate) {
+        String label = predicate.hasProperty(RDFS.label) ? predicate.getProperty(RDFS.label).getString() : predicate.getLocalName();
+        Resource range = predicate.getPropertyResourceValue(RDFS.range);
+        Field field = fieldForRange(range);
+
+        List<String> options = null;
+        if(field.dropdown)
+            options = dropdownOptions != null ? dropdownOptions.get(predicate.toString()) : DropdownOptions.optionsOf(predicate);
+        return new FieldDescriptor(predicate.toString(), label, field.type, field.precision, field.min, options);
+    }
+
+    private static Field fieldForRange(Resource range) {
+        if(range == null)
+            return INPUT;
+        Field field = BY_RANGE.get(range);
+        if(field != null)
+            return field;
+        String name = range.toString();
+        for(Map.Entry<String, Field> entry : BY_RANGE_NAME.entrySet()) {
+            if(name.contains(entry.getKey()))
+                return entry.getValue();
+        }
+        return INPUT;
+    }
+}
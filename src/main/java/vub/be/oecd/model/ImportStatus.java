@@ -0,0 +1,100 @@
+package vub.be.oecd.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Progress of a bulk import of Blockly XML files (see DossierImportJob), a snapshot at one moment
+ */
+public class ImportStatus {
+
+    private final String state;
+    private final String source;
+    private final long total;
+    private final long processed;
+    private final long imported;
+    private final long failed;
+    private final Long startedAt;
+    private final Long finishedAt;
+    private final long elapsedMillis;
+    private final Map<String, String> failures;
+
+    public ImportStatus(String state, String source, long total, long processed, long imported, long failed,
+                        Long startedAt, Long finishedAt, long elapsedMillis, Map<String, String> failures) {
+        this.state = state;
+        this.source = source;
+        this.total = total;
+        this.processed = processed;
+        this.imported = imported;
+        this.failed = failed;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.elapsedMillis = elapsedMillis;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return idle, running, stopping, stopped, done or failed
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return name of the zip file or the directory
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return number of XML files in the source
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return files saved as a new dossier
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return files that could not be imported, or whose RDF could not be written
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return files per second
+     */
+    public double getThroughput() {
+        return elapsedMillis == 0 ? 0 : processed * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return the first failures, by file name, the full list is at /admin/import/failures
+     */
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,85 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Datatype of the literals of every predicate (its rdfs:range), built once per ontology version.
+ * The XML of a dossier does not keep track of types, so the literals are typed while the triples are produced.
+ */
+public class LiteralTypes {
+
+    private final Map<Node, RDFDatatype> byPredicate;
+
+    private LiteralTypes(Map<Node, RDFDatatype> byPredicate) {
+        this.byPredicate = Collections.unmodifiableMap(byPredicate);
+    }
+
+    /**
+     * @param ontology the (read only) ontology model
+     */
+    public static LiteralTypes build(Model ontology) {
+        Map<Node, RDFDatatype> byPredicate = new HashMap<Node, RDFDatatype>();
+        StmtIterator iter = ontology.listStatements(null, RDFS.range, (RDFNode) null);
+        while(iter.hasNext()) {
+            Statement s = iter.next();
+            Node predicate = s.getSubject().asNode();
+            //one range per predicate, like getProperty(RDFS.range) before
+            if(s.getObject().isURIResource() && !byPredicate.containsKey(predicate))
+                byPredicate.put(predicate, TypeMapper.getInstance().getSafeTypeByName(s.getObject().asResource().getURI()));
+        }
+        return new LiteralTypes(byPredicate);
+    }
+
+    /**
+     * @return the typed version of the literal, or the literal itself when the predicate has no range
+     * or the value is not valid for it
+     */
+    public Node type(Node predicate, Node literal) {
+        if(!literal.isLiteral() || !literal.getLiteralLanguage().isEmpty())
+            return literal;
+        RDFDatatype datatype = byPredicate.get(predicate);
+        if(datatype == null || datatype.equals(literal.getLiteralDatatype()))
+            return literal;
+        String value = literal.getLiteralLexicalForm();
+        //the Blockly date field only gives a date, which is midnight
+        if(datatype == XSDDatatype.XSDdateTime && XSDDatatype.XSDdate.isValid(value))
+            value = value + "T00:00:00";
+        //the Blockly checkbox gives TRUE or FALSE, xsd:boolean only has lower case
+        if(datatype == XSDDatatype.XSDboolean && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")))
+            value = value.toLowerCase();
+        //a value that is not valid for the type stays a plain string
+        if(!datatype.isValid(value))
+            return literal;
+        return NodeFactory.createLiteral(value, datatype);
+    }
+
+    /**
+     * @return a sink that types the literals and passes the triples on to the given sink
+     */
+    public StreamRDF wrap(StreamRDF sink) {
+        return new StreamRDFWrapper(sink) {
+            @Override
+            public void triple(Triple triple) {
+                Node object = type(triple.getPredicate(), triple.getObject());
+                super.triple(object == triple.getObject() ? triple
+                        : Triple.create(triple.getSubject(), triple.getPredicate(), object));
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Immutable view on one parsed version of the ontology.
+ * A snapshot is never modified after creation, a reload of the ontology creates a new one
+ * (see OntologyRegistry), so requests can keep using the snapshot they started with.
+ */
+public class OntologySnapshot {
+
+    private final String version;
+    private final long loadedAt;
+    private final Model model;
+    private final DropdownOptions dropdownOptions;
+    private final BlockCatalog catalog;
+    private final LiteralTypes literalTypes;
+
+    private OntologySnapshot(String version, Model model) {
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+        this.model = model;
+        this.dropdownOptions = DropdownOptions.build(model);
+        this.catalog = BlockCatalog.build(model, dropdownOptions);
+        this.literalTypes = LiteralTypes.build(model);
+    }
+
+    /**
+     * Parses the given turtle content into a new snapshot
+     * @param content bytes of the ontologie.ttl file
+     * @return the snapshot, its version is derived from the content
+     */
+    public static OntologySnapshot parse(byte[] content) {
+        Model parsed = ModelFactory.createDefaultModel();
+        RDFParser.create()
+                .fromString(new String(content, StandardCharsets.UTF_8))
+                .lang(Lang.TURTLE)
+                .parse(parsed.getGraph());
+        Model readOnly = ModelFactory.createModelForGraph(new GraphReadOnly(parsed.getGraph()));
+        return new OntologySnapshot(versionOf(content), readOnly);
+    }
+
+    /**
+     * Version is the start of the SHA-1 of the file, so the same file always gets the same version
+     */
+    public static String versionOf(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                sb.append(String.format("%02x", digest[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return read-only model of the ontology, any attempt to add or remove statements fails
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * @return all block definitions of this version, indexed by type
+     */
+    public BlockCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the dropdown options of every predicate in this version
+     */
+    public DropdownOptions getDropdownOptions() {
+        return dropdownOptions;
+    }
+
+    /**
+     * @return the datatype of the literals of every predicate in this version
+     */
+    public LiteralTypes getLiteralTypes() {
+        return literalTypes;
+    }
+}
@@ -0,0 +1,125 @@
+package vub.be.oecd.model;
+
+/**
+ * State of the RDF materialization of a dossier (see RdfMaterializer), immutable.
+ * Times are epoch milliseconds, durations milliseconds, null when not known (yet).
+ */
+public class RdfStatus {
+
+    public enum State { PENDING, DONE, FAILED }
+
+    private final long dossierId;
+    private final State state;
+    private final long submittedAt;
+    private final Long startedAt;
+    private final Long finishedAt;
+    private final Long conversionMillis;
+    private final Long writeMillis;
+    private final Long triples;
+    private final Integer triplesAdded;
+    private final Integer triplesRemoved;
+    private final String error;
+    //saves that were replaced by a later one before they were converted
+    private final int coalesced;
+
+    private RdfStatus(long dossierId, State state, long submittedAt, Long startedAt, Long finishedAt,
+                      Long conversionMillis, Long writeMillis, Long triples, Integer triplesAdded, Integer triplesRemoved,
+                      String error, int coalesced) {
+        this.dossierId = dossierId;
+        this.state = state;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.conversionMillis = conversionMillis;
+        this.writeMillis = writeMillis;
+        this.triples = triples;
+        this.triplesAdded = triplesAdded;
+        this.triplesRemoved = triplesRemoved;
+        this.error = error;
+        this.coalesced = coalesced;
+    }
+
+    public static RdfStatus pending(long dossierId, long submittedAt, int coalesced) {
+        return new RdfStatus(dossierId, State.PENDING, submittedAt, null, null, null, null, null, null, null, null, coalesced);
+    }
+
+    public RdfStatus started(long startedAt) {
+        return new RdfStatus(dossierId, State.PENDING, submittedAt, startedAt, null, null, null, null, null, null, null, coalesced);
+    }
+
+    public RdfStatus done(long finishedAt, long conversionMillis, long writeMillis, long triples,
+                          int triplesAdded, int triplesRemoved) {
+        return new RdfStatus(dossierId, State.DONE, submittedAt, startedAt, finishedAt,
+                conversionMillis, writeMillis, triples, triplesAdded, triplesRemoved, null, coalesced);
+    }
+
+    public RdfStatus failed(long finishedAt, String error) {
+        return new RdfStatus(dossierId, State.FAILED, submittedAt, startedAt, finishedAt,
+                null, null, null, null, null, error, coalesced);
+    }
+
+    public long getDossierId() {
+        return dossierId;
+    }
+
+    /**
+     * @return pending, done or failed
+     */
+    public String getState() {
+        return state.name().toLowerCase();
+    }
+
+    public boolean isPending() {
+        return state == State.PENDING;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return time between the save and the start of the conversion
+     */
+    public Long getQueuedMillis() {
+        return startedAt == null ? null : startedAt - submittedAt;
+    }
+
+    public Long getConversionMillis() {
+        return conversionMillis;
+    }
+
+    public Long getWriteMillis() {
+        return writeMillis;
+    }
+
+    public Long getTriples() {
+        return triples;
+    }
+
+    /**
+     * @return triples written to the graph, only the changes are written
+     */
+    public Integer getTriplesAdded() {
+        return triplesAdded;
+    }
+
+    public Integer getTriplesRemoved() {
+        return triplesRemoved;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public int getCoalesced() {
+        return coalesced;
+    }
+}
@@ -0,0 +1,104 @@
+package vub.be.oecd.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Progress of the rebuild of all dossier graphs (see RematerializationJob), a snapshot at one moment
+ */
+public class RematerializationStatus {
+
+    private final String state;
+    private final long total;
+    private final long processed;
+    private final long written;
+    private final long skipped;
+    private final long failed;
+    private final long checkpoint;
+    private final Long startedAt;
+    private final Long finishedAt;
+    private final long elapsedMillis;
+    private final Map<Long, String> failures;
+
+    public RematerializationStatus(String state, long total, long processed, long written, long skipped, long failed,
+                                   long checkpoint, Long startedAt, Long finishedAt, long elapsedMillis,
+                                   Map<Long, String> failures) {
+        this.state = state;
+        this.total = total;
+        this.processed = processed;
+        this.written = written;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.checkpoint = checkpoint;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.elapsedMillis = elapsedMillis;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return idle, running, stopping, stopped, done or failed
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return number of dossiers when the job started
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return dossiers without XML or saved by a user while the job was running
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return every dossier up to this id is done, a resumed job continues after it
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return dossiers per second
+     */
+    public double getThroughput() {
+        return elapsedMillis == 0 ? 0 : processed * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return the first failures, by dossier id
+     */
+    public Map<Long, String> getFailures() {
+        return failures;
+    }
+}
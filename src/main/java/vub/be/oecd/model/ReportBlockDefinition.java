@@ -18,10 +18,19 @@ public class ReportBlockDefinition extends BlockDefinition {
         super(resource);
     }
 
+    public ReportBlockDefinition(Resource resource, FieldDescriptors fields) {
+        super(resource, fields);
+    }
+
     private static String siblingsAsList = null;
     @Override
     public String getSiblingsAsList() {
-        if(model == null) {
+        return getSiblingsAsList(resource);
+    }
+
+    private static synchronized String getSiblingsAsList(Resource resource) {
+        //recompute when the ontology was reloaded (new snapshot => new model)
+        if(model != resource.getModel()) {
             model = resource.getModel();
             List<BlockDefinition> list = new ArrayList<BlockDefinition>();
             StmtIterator iter = model.listStatements(null, RDFS.subClassOf, OECDVariables.REPORT);
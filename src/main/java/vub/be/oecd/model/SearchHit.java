@@ -0,0 +1,47 @@
+package vub.be.oecd.model;
+
+/**
+ * A literal of a dossier graph that matched a full-text search (see DossierTextIndex)
+ */
+public class SearchHit {
+
+    private final long dossierId;
+    private final String report;
+    private final String predicate;
+    private final String value;
+    private final float score;
+
+    public SearchHit(long dossierId, String report, String predicate, String value, float score) {
+        this.dossierId = dossierId;
+        this.report = report;
+        this.predicate = predicate;
+        this.value = value;
+        this.score = score;
+    }
+
+    public long getDossierId() {
+        return dossierId;
+    }
+
+    /**
+     * @return block type of the report holding the literal (part after #), Opinion for the dossier itself
+     */
+    public String getReport() {
+        return report;
+    }
+
+    /**
+     * @return predicate of the literal (part after #)
+     */
+    public String getPredicate() {
+        return predicate;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
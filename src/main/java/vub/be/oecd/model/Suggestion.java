@@ -0,0 +1,39 @@
+package vub.be.oecd.model;
+
+/**
+ * A label that matched a typeahead query (see SuggestService)
+ */
+public class Suggestion {
+
+    public static final String BLOCK = "block";
+    public static final String LABEL = "label";
+    public static final String DOMAIN_CONCEPT = "domainConcept";
+
+    private final String label;
+    private final String kind;
+    private final String value;
+
+    public Suggestion(String label, String kind, String value) {
+        this.label = label;
+        this.kind = kind;
+        this.value = value;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return block (a block of the ontology), label (rdfs:label of a property or class) or domainConcept
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the block name as used by the "composed of" dropdown, the URI for a label, the name of a domain concept
+     */
+    public String getValue() {
+        return value;
+    }
+}
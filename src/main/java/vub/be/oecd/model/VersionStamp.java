@@ -0,0 +1,45 @@
+package vub.be.oecd.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A counter in the database that is incremented on every change of a table, so every app instance
+ * can tell whether what it cached is still current (see DomainConceptServiceImpl)
+ */
+@Entity
+@Table(name = "version_stamp")
+public class VersionStamp {
+
+    public static final String DOMAIN_CONCEPT = "domain_concept";
+
+    @Id
+    private String name;
+
+    private long version;
+
+    public VersionStamp() {
+    }
+
+    public VersionStamp(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -3,10 +3,28 @@ package vub.be.oecd.repository;
 // This will be AUTO IMPLEMENTED by Spring into a Bean called userRepository
 // CRUD refers Create, Read, Update, Delete
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptSummary;
+
+import java.util.List;
 
 
 public interface DomainConceptRepository extends CrudRepository<DomainConcept, Long> {
 
+    //all concepts with their XML and script (lazy otherwise) in one query
+    @Query("from DomainConcept dc fetch all properties")
+    List<DomainConcept> findAllWithXmlAndScript();
+
+    //pages for the list of domain concepts, only the columns of the projection are selected
+    Page<DomainConceptSummary> findAllProjectedBy(Pageable pageable);
+
+    Page<DomainConceptSummary> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    //all concepts without their XML and script, eg. to index the names
+    List<DomainConceptSummary> findSummariesBy();
+
 }
\ No newline at end of file
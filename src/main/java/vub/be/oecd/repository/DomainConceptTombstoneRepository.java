@@ -0,0 +1,20 @@
+package vub.be.oecd.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import vub.be.oecd.model.DomainConceptTombstone;
+
+import java.util.List;
+
+public interface DomainConceptTombstoneRepository extends CrudRepository<DomainConceptTombstone, Long> {
+
+    List<DomainConceptTombstone> findByVersionGreaterThan(long version);
+
+    //one delete statement instead of loading the tombstones first
+    @Modifying
+    @Query("delete from DomainConceptTombstone t where t.version <= :version")
+    int deleteUpToVersion(@Param("version") long version);
+
+}
@@ -3,10 +3,26 @@ package vub.be.oecd.repository;
 // This will be AUTO IMPLEMENTED by Spring into a Bean called userRepository
 // CRUD refers Create, Read, Update, Delete
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.DossierSummary;
+
+import java.util.List;
 
 
 public interface DossierRepository extends CrudRepository<Dossier, Long> {
 
+    //keyset paging: the next dossiers after the given id, with their XML (lazy otherwise) in the same query
+    @Query("from Dossier d fetch all properties where d.id > :id order by d.id")
+    List<Dossier> findWithXmlByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    //pages for the list of dossiers, only the columns of the projection are selected
+    Page<DossierSummary> findAllProjectedBy(Pageable pageable);
+
+    Page<DossierSummary> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
 }
\ No newline at end of file
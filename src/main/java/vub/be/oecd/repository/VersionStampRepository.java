@@ -0,0 +1,19 @@
+package vub.be.oecd.repository;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import vub.be.oecd.model.VersionStamp;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+public interface VersionStampRepository extends CrudRepository<VersionStamp, String> {
+
+    //locks the row until the end of the transaction, so concurrent increments of several instances are not lost
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("from VersionStamp v where v.name = :name")
+    Optional<VersionStamp> findForUpdate(@Param("name") String name);
+
+}
@@ -0,0 +1,74 @@
+package vub.be.oecd.service;
+
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import vub.be.oecd.model.BlockBundle;
+import vub.be.oecd.model.OntologySnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates the JavaScript bundle with all Blockly block definitions (templates/blocks_bundle.js).
+ * The bundle is rendered once per ontology version and kept in memory, plain and gzipped.
+ */
+@Service
+public class BlockBundleService {
+
+    private final TemplateEngine templateEngine;
+
+    private final AtomicReference<BlockBundle> bundle = new AtomicReference<>();
+
+    public BlockBundleService() {
+        //separate engine in JAVASCRIPT mode, the web templates are (legacy) html
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".js");
+        resolver.setTemplateMode(TemplateMode.JAVASCRIPT);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+    }
+
+    /**
+     * @param snapshot the ontology snapshot of the current request
+     * @return the bundle for the version of the snapshot, rendered only if not done before
+     */
+    public BlockBundle getBundle(OntologySnapshot snapshot) {
+        BlockBundle current = bundle.get();
+        if (current != null && current.getOntologyVersion().equals(snapshot.getVersion()))
+            return current;
+
+        synchronized (this) {
+            current = bundle.get();
+            if (current == null || !current.getOntologyVersion().equals(snapshot.getVersion())) {
+                current = render(snapshot);
+                bundle.set(current);
+            }
+            return current;
+        }
+    }
+
+    private BlockBundle render(OntologySnapshot snapshot) {
+        Context context = new Context();
+        context.setVariable("blockDefinitions", snapshot.getCatalog().getBlockDefinitions());
+        byte[] content = templateEngine.process("blocks_bundle", context).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(content.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("Block bundle rendered for ontology version " + snapshot.getVersion());
+        return new BlockBundle(snapshot.getVersion(), content, gzipped.toByteArray());
+    }
+}
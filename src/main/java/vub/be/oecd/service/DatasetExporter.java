@@ -0,0 +1,168 @@
+package vub.be.oecd.service;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.util.OECDVariables;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export of all named graphs of the TDB2 dataset, gzip compressed while writing:
+ * - NQUADS: one N-Quads file
+ * - TURTLE: a tar with one Turtle file per graph, {id}.ttl for the dossiers
+ * Runs inside one read transaction, so the export is a consistent snapshot and writers keep going.
+ * Triples are streamed from TDB2 to the output, only the Turtle of one graph is held in memory.
+ * Also used from the command line, see OecdApplication.
+ */
+@Service
+public class DatasetExporter {
+
+    public enum Format {
+        NQUADS(".nq.gz"),
+        TURTLE(".tar.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private DossierGraphStore dossierGraphStore;
+
+    /**
+     * @return number of triples exported
+     */
+    public long export(Format format, OutputStream out) throws IOException {
+        return export(dossierGraphStore.getDataset(), format, out);
+    }
+
+    /**
+     * Writes the export to the output, the output is flushed but not closed
+     * @return number of triples exported
+     */
+    public static long export(Dataset dataset, Format format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        long triples;
+        try {
+            triples = Txn.calculateRead(dataset, () -> {
+                try {
+                    return format == Format.NQUADS ? writeNQuads(dataset, gzip) : writeTurtleTar(dataset, gzip);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        gzip.finish();
+        out.flush();
+        System.out.println("Exported " + triples + " triples as " + format + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return triples;
+    }
+
+    private static long writeNQuads(Dataset dataset, OutputStream out) {
+        StreamRDF writer = StreamRDFWriter.getWriterStream(out, Lang.NQUADS);
+        long count = 0;
+        writer.start();
+        Iterator<Quad> quads = dataset.asDatasetGraph().findNG(Node.ANY, Node.ANY, Node.ANY, Node.ANY);
+        while (quads.hasNext()) {
+            writer.quad(quads.next());
+            count++;
+        }
+        writer.finish();
+        return count;
+    }
+
+    private static long writeTurtleTar(Dataset dataset, OutputStream out) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(out, "UTF-8");
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        Date now = new Date();
+        long count = 0;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Iterator<Node> names = dataset.asDatasetGraph().listGraphNodes();
+        while (names.hasNext()) {
+            Node name = names.next();
+            buffer.reset();
+            count += writeTurtle(dataset.asDatasetGraph().getGraph(name), buffer);
+            TarArchiveEntry entry = new TarArchiveEntry(entryName(name));
+            entry.setSize(buffer.size());
+            entry.setModTime(now);
+            tar.putArchiveEntry(entry);
+            buffer.writeTo(tar);
+            tar.closeArchiveEntry();
+        }
+        tar.finish();
+        return count;
+    }
+
+    private static long writeTurtle(Graph graph, OutputStream out) {
+        StreamRDF writer = StreamRDFWriter.getWriterStream(out, Lang.TURTLE);
+        long count = 0;
+        writer.start();
+        writer.prefix("ont", OECDVariables.NS);
+        writer.prefix("dcterms", DCTerms.NS);
+        writer.prefix("rdf", RDF.uri);
+        writer.prefix("rdfs", RDFS.uri);
+        writer.prefix("xsd", XSD.NS);
+        ExtendedIterator<Triple> triples = graph.find();
+        try {
+            while (triples.hasNext()) {
+                writer.triple(triples.next());
+                count++;
+            }
+        } finally {
+            triples.close();
+        }
+        writer.finish();
+        return count;
+    }
+
+    /**
+     * @return {id}.ttl for the graph of a dossier, graphs/{encoded name}.ttl for other graphs
+     */
+    static String entryName(Node graphName) {
+        String uri = graphName.getURI();
+        String base = DossierRdfConverter.BASE;
+        if (uri.startsWith(base) && uri.length() > base.length() && uri.substring(base.length()).matches("\\d+"))
+            return uri.substring(base.length()) + ".ttl";
+        try {
+            return "graphs/" + URLEncoder.encode(uri, "UTF-8") + ".ttl";
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
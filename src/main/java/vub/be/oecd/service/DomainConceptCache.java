@@ -0,0 +1,168 @@
+package vub.be.oecd.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.DomainConcept;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Domain concepts by id, tagged with the version stamp of the domain_concept table they were read at
+ * (see VersionStamp). A newer version makes everything stale. The full list is cached as long as all
+ * concepts fit in oecd.domain-concept.cache.max-entries, least recently used concepts go first.
+ * Concepts are copied going in and coming out, so callers can change what they get.
+ * Hits, misses and evictions are published as oecd.domain-concept.cache.* metrics.
+ */
+@Service
+public class DomainConceptCache {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${oecd.domain-concept.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    //access order, guarded by this
+    private final LinkedHashMap<Long, DomainConcept> concepts = new LinkedHashMap<Long, DomainConcept>(16, 0.75f, true);
+    //ids of all concepts in table order, null when the full list is not cached
+    private List<Long> all;
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry == null)
+            return;
+        FunctionCounter.builder("oecd.domain-concept.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("oecd.domain-concept.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("oecd.domain-concept.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("oecd.domain-concept.cache.entries", this, DomainConceptCache::size).register(meterRegistry);
+        Gauge.builder("oecd.domain-concept.cache.hit-ratio", this, DomainConceptCache::getHitRatio).register(meterRegistry);
+    }
+
+    /**
+     * @return a copy of the cached concept, null when it is not cached at this version
+     */
+    public synchronized DomainConcept get(long id, long version) {
+        dropStale(version);
+        DomainConcept concept = this.version == version ? concepts.get(id) : null;
+        if (concept == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(concept);
+    }
+
+    /**
+     * @return copies of all concepts, null when the full list is not cached at this version
+     */
+    public synchronized List<DomainConcept> getAll(long version) {
+        dropStale(version);
+        if (this.version != version || all == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        List<DomainConcept> copies = new ArrayList<DomainConcept>(all.size());
+        for (Long id : all)
+            copies.add(copy(concepts.get(id)));
+        return copies;
+    }
+
+    /**
+     * Caches a concept that was read at the given version
+     */
+    public synchronized void put(DomainConcept concept, long version) {
+        dropStale(version);
+        if (version < this.version || concept.getId() == null)
+            return;
+        concepts.put(concept.getId(), copy(concept));
+        evict();
+    }
+
+    /**
+     * Caches all concepts, read at the given version, unless there are more than max-entries
+     */
+    public synchronized void putAll(List<DomainConcept> domainConcepts, long version) {
+        dropStale(version);
+        if (version < this.version || domainConcepts.size() > maxEntries)
+            return;
+        List<Long> ids = new ArrayList<Long>(domainConcepts.size());
+        for (DomainConcept concept : domainConcepts) {
+            concepts.put(concept.getId(), copy(concept));
+            ids.add(concept.getId());
+        }
+        evict();
+        all = ids;
+    }
+
+    /**
+     * Drops everything, for changes made by this instance
+     */
+    public synchronized void clear() {
+        evictions.addAndGet(concepts.size());
+        concepts.clear();
+        all = null;
+    }
+
+    public synchronized int size() {
+        return concepts.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private void evict() {
+        Iterator<DomainConcept> eldest = concepts.values().iterator();
+        while (concepts.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+            all = null;
+        }
+    }
+
+    //a newer version makes every cached concept stale
+    private void dropStale(long version) {
+        if (version > this.version) {
+            this.version = version;
+            clear();
+        }
+    }
+
+    static DomainConcept copy(DomainConcept concept) {
+        DomainConcept copy = new DomainConcept();
+        copy.setId(concept.getId());
+        copy.setName(concept.getName());
+        copy.setType(concept.getType());
+        copy.setUrl(concept.getUrl());
+        copy.setXML(concept.getXML());
+        copy.setScript(concept.getScript());
+        copy.setVersion(concept.getVersion());
+        copy.setCreatedVersion(concept.getCreatedVersion());
+        return copy;
+    }
+}
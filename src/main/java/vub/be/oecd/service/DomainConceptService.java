@@ -1,6 +1,12 @@
 package vub.be.oecd.service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
+import vub.be.oecd.model.DomainConceptSummary;
+
+import java.util.List;
 
 public interface DomainConceptService {
 
@@ -8,5 +14,9 @@ public interface DomainConceptService {
     void saveDomainConcept(DomainConcept domainConcept);
     DomainConcept getDomainConceptById(long id);
     void deleteDomainConceptById(long id);
+    Page<DomainConceptSummary> getDomainConceptSummaries(String name, Pageable pageable);
+    List<DomainConceptSummary> getAllDomainConceptSummaries();
+    DomainConceptChanges getDomainConceptChanges(Long since);
+    long getDomainConceptVersion();
 
 }
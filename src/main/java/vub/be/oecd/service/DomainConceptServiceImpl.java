@@ -1,34 +1,115 @@
 package vub.be.oecd.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
+import vub.be.oecd.model.DomainConceptSummary;
+import vub.be.oecd.model.DomainConceptTombstone;
+import vub.be.oecd.model.VersionStamp;
 import vub.be.oecd.repository.DomainConceptRepository;
+import vub.be.oecd.repository.DomainConceptTombstoneRepository;
+import vub.be.oecd.repository.VersionStampRepository;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Domain concepts are read from the DomainConceptCache. Every save or delete increments the domain_concept
+ * version stamp in the database, in the same transaction, and marks the concept (or its tombstone) with the new
+ * version. The cache is stale as soon as an instance sees a newer stamp.
+ * The stamp is read at most once per oecd.domain-concept.cache.check-interval-ms, so changes made by
+ * other instances show up after that interval, changes of this instance right away.
+ * Tombstones are kept for oecd.domain-concept.tombstone-retention versions, clients with an older version get
+ * the full list.
+ */
 @Service
 public class DomainConceptServiceImpl implements DomainConceptService{
 
     @Autowired
     private DomainConceptRepository domainConceptRepository;
 
+    @Autowired
+    private DomainConceptTombstoneRepository domainConceptTombstoneRepository;
+
+    @Autowired
+    private VersionStampRepository versionStampRepository;
+
+    @Autowired
+    private DomainConceptCache domainConceptCache;
+
+    @Value("${oecd.domain-concept.cache.check-interval-ms:1000}")
+    private long checkIntervalMillis = 1000;
+
+    @Value("${oecd.domain-concept.tombstone-retention:1000}")
+    private long tombstoneRetention = 1000;
+
+    //guarded by this
+    private long version;
+    private long checkedAt;
+
+    //the stamp row has to exist before it can be locked
+    @PostConstruct
+    public void initVersionStamp() {
+        if (versionStampRepository.existsById(VersionStamp.DOMAIN_CONCEPT))
+            return;
+        try {
+            versionStampRepository.save(new VersionStamp(VersionStamp.DOMAIN_CONCEPT, 0));
+        } catch (DataIntegrityViolationException e) {
+            //inserted by another instance at the same time
+        }
+    }
+
     @Override
     public Iterable<DomainConcept> getAllDomainConcepts() {
-        return domainConceptRepository.findAll();
+        return all(version());
+    }
+
+    private List<DomainConcept> all(long version) {
+        List<DomainConcept> cached = domainConceptCache.getAll(version);
+        if (cached != null)
+            return cached;
+        List<DomainConcept> domainConcepts = domainConceptRepository.findAllWithXmlAndScript();
+        domainConceptCache.putAll(domainConcepts, version);
+        return domainConcepts;
     }
 
     @Override
+    @Transactional
     public void saveDomainConcept(DomainConcept domainConcept) {
+        long version = nextVersion();
+        Long createdVersion = version;
+        if (domainConcept.getId() != null) {
+            Optional<DomainConcept> existing = domainConceptRepository.findById(domainConcept.getId());
+            if (existing.isPresent())
+                createdVersion = versionOf(existing.get().getCreatedVersion());
+        }
+        domainConcept.setVersion(version);
+        domainConcept.setCreatedVersion(createdVersion);
         this.domainConceptRepository.save(domainConcept);
     }
 
     @Override
     public DomainConcept getDomainConceptById(long id) {
+        long version = version();
+        DomainConcept cached = domainConceptCache.get(id, version);
+        if (cached != null)
+            return cached;
         Optional<DomainConcept> optional = domainConceptRepository.findById(id);
         DomainConcept domainConcept = null;
         if(optional.isPresent()){
             domainConcept = optional.get();
+            domainConceptCache.put(domainConcept, version);
         } else {
             throw new RuntimeException("Domain concept not found for id :: " + id);
         }
@@ -36,7 +117,101 @@ public class DomainConceptServiceImpl implements DomainConceptService{
     }
 
     @Override
+    @Transactional
     public void deleteDomainConceptById(long id) {
+        long version = nextVersion();
         this.domainConceptRepository.deleteById(id);
+        domainConceptTombstoneRepository.save(new DomainConceptTombstone(id, version));
+        domainConceptTombstoneRepository.deleteUpToVersion(version - tombstoneRetention);
+    }
+
+    /**
+     * @param since version the client has, null (or a version that is not known here or older than the
+     *              tombstones that are kept) for all concepts
+     */
+    @Override
+    public DomainConceptChanges getDomainConceptChanges(Long since) {
+        long version = version();
+        List<DomainConcept> all = all(version);
+        //the tombstones up to version - tombstoneRetention may be pruned
+        if (since == null || since < 0 || since > version || since < version - tombstoneRetention)
+            return new DomainConceptChanges(version, true, all, Collections.emptyList(), Collections.emptyList());
+        List<DomainConcept> added = new ArrayList<DomainConcept>();
+        List<DomainConcept> updated = new ArrayList<DomainConcept>();
+        for (DomainConcept domainConcept : all) {
+            if (versionOf(domainConcept.getCreatedVersion()) > since)
+                added.add(domainConcept);
+            else if (versionOf(domainConcept.getVersion()) > since)
+                updated.add(domainConcept);
+        }
+        List<Long> deleted = new ArrayList<Long>();
+        if (since < version) {
+            for (DomainConceptTombstone tombstone : domainConceptTombstoneRepository.findByVersionGreaterThan(since)) {
+                //deleted after the version of the list
+                if (tombstone.getVersion() <= version)
+                    deleted.add(tombstone.getId());
+            }
+        }
+        return new DomainConceptChanges(version, false, added, updated, deleted);
+    }
+
+    /**
+     * @return the domain_concept version stamp, changes whenever a concept is saved or deleted
+     */
+    @Override
+    public long getDomainConceptVersion() {
+        return version();
+    }
+
+    //concepts from before the version stamps count as version 0
+    private static long versionOf(Long version) {
+        return version == null ? 0 : version;
+    }
+
+    //the stamp is read before the concepts, so concepts cached under it are never older than it
+    private synchronized long version() {
+        long now = System.currentTimeMillis();
+        if (now - checkedAt >= checkIntervalMillis) {
+            version = Math.max(version, versionStampRepository.findById(VersionStamp.DOMAIN_CONCEPT)
+                    .map(VersionStamp::getVersion).orElse(0L));
+            checkedAt = now;
+        }
+        return version;
+    }
+
+    //increments the stamp, the row stays locked until the change is committed
+    private long nextVersion() {
+        VersionStamp stamp = versionStampRepository.findForUpdate(VersionStamp.DOMAIN_CONCEPT)
+                .orElseThrow(() -> new IllegalStateException("No version stamp " + VersionStamp.DOMAIN_CONCEPT));
+        long next = stamp.getVersion() + 1;
+        stamp.setVersion(next);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                synchronized (DomainConceptServiceImpl.this) {
+                    version = Math.max(version, next);
+                }
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @param name part of the name, case insensitive, null or empty for all concepts
+     * @return a page of id, name, url and type of the concepts, without loading their XML and script
+     */
+    @Override
+    public Page<DomainConceptSummary> getDomainConceptSummaries(String name, Pageable pageable) {
+        if (name == null || name.isEmpty())
+            return domainConceptRepository.findAllProjectedBy(pageable);
+        return domainConceptRepository.findByNameContainingIgnoreCase(name, pageable);
+    }
+
+    /**
+     * @return id, name, url and type of all concepts, without loading their XML and script
+     */
+    @Override
+    public List<DomainConceptSummary> getAllDomainConceptSummaries() {
+        return domainConceptRepository.findSummariesBy();
     }
 }
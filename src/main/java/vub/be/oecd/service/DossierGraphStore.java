@@ -0,0 +1,136 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.util.GraphDelta;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TDB2 dataset with the RDF of the dossiers, one named graph per dossier.
+ * Opened once at startup and shared by all readers and writers, so TDB2 keeps its caches between requests.
+ * Every access must happen inside a transaction.
+ */
+@Service
+public class DossierGraphStore {
+
+    @Value("${oecd.tdb2.location:tdb2}")
+    private String location;
+
+    private Dataset dataset;
+
+    //advances after every commit that changed a graph, cached query results of older generations are stale
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void open() {
+        File directory = new File(location);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalStateException("Can not create TDB2 location " + directory.getAbsolutePath());
+        dataset = TDB2Factory.connectDataset(location);
+        System.out.println("TDB2 dataset opened at " + directory.getAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataset != null) {
+            dataset.close();
+            System.out.println("TDB2 dataset closed");
+        }
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return the generation of the data, read it before starting the read transaction of a query
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * To call after a commit that changed the data
+     */
+    void advanceGeneration() {
+        generation.incrementAndGet();
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return name of the graph with the RDF of a dossier
+     */
+    public static String graphName(long dossierId) {
+        return DossierRdfConverter.BASE + dossierId;
+    }
+
+    /**
+     * Replaces the graph of a dossier by the given model, in one write transaction.
+     * Only for tests, the application writes through the GraphCommitQueue so the text index follows.
+     * @return the triples that were removed and added
+     */
+    GraphDelta replaceGraph(long dossierId, Model model) {
+        GraphDelta delta = Txn.calculateWrite(dataset, () -> replaceGraphInTransaction(dossierId, model));
+        if (!delta.isEmpty())
+            advanceGeneration();
+        return delta;
+    }
+
+    /**
+     * Replaces the graph of a dossier, the caller must be in a write transaction (see GraphCommitQueue).
+     * Only the triples that changed are written.
+     */
+    GraphDelta replaceGraphInTransaction(long dossierId, Model model) {
+        return replaceNamedGraphInTransaction(graphName(dossierId), model.getGraph());
+    }
+
+    /**
+     * Removes the graph of a dossier, the caller must be in a write transaction (see GraphCommitQueue)
+     */
+    GraphDelta removeGraphInTransaction(long dossierId) {
+        return replaceNamedGraphInTransaction(graphName(dossierId), Graph.emptyGraph);
+    }
+
+    /**
+     * Replaces any named graph in one write transaction.
+     * Only for tests, the application writes through the GraphCommitQueue.
+     */
+    GraphDelta replaceNamedGraph(String graphName, Graph content) {
+        GraphDelta delta = Txn.calculateWrite(dataset, () -> replaceNamedGraphInTransaction(graphName, content));
+        if (!delta.isEmpty())
+            advanceGeneration();
+        return delta;
+    }
+
+    /**
+     * Replaces any named graph (eg. the ontology), the caller must be in a write transaction
+     */
+    GraphDelta replaceNamedGraphInTransaction(String graphName, Graph content) {
+        Graph graph = dataset.asDatasetGraph().getGraph(NodeFactory.createURI(graphName));
+        GraphDelta delta = GraphDelta.between(graph, content);
+        delta.applyTo(graph);
+        return delta;
+    }
+
+    /**
+     * @return an in-memory copy of the graph of a dossier, empty if there is none
+     */
+    public Model readGraph(long dossierId) {
+        return Txn.calculateRead(dataset, () ->
+                ModelFactory.createDefaultModel().add(dataset.getNamedModel(graphName(dossierId))));
+    }
+}
@@ -0,0 +1,36 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.system.Txn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the TDB2 dataset as up when a read transaction can be started on it (see /actuator/health)
+ */
+@Component
+public class DossierGraphStoreHealthIndicator extends AbstractHealthIndicator {
+
+    @Autowired
+    private DossierGraphStore store;
+
+    @Autowired
+    private GraphCommitQueue commitQueue;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.withDetail("location", store.getLocation())
+                .withDetail("queuedWrites", commitQueue.getQueued())
+                .withDetail("committedWrites", commitQueue.getWrites())
+                .withDetail("committedBatches", commitQueue.getBatches())
+                .withDetail("triplesAdded", commitQueue.getTriplesAdded())
+                .withDetail("triplesRemoved", commitQueue.getTriplesRemoved());
+        if (store.getDataset() == null || !store.getDataset().supportsTransactions()) {
+            builder.down();
+            return;
+        }
+        Txn.executeRead(store.getDataset(), () -> store.getDataset().getDefaultModel().isEmpty());
+        builder.up();
+    }
+}
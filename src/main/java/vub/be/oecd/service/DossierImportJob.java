@@ -0,0 +1,413 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.ImportStatus;
+import vub.be.oecd.util.GraphDelta;
+import vub.be.oecd.util.OECDVariables;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Admin job that imports Blockly XML files (*.xml) from a zip or a directory as new dossiers.
+ * The files are handled in batches of oecd.import.batch-size: they are read, parsed and validated in parallel
+ * on a fork-join pool, the valid ones are inserted in one transaction with batched JDBC inserts and their graphs
+ * are written through the GraphCommitQueue, so they share TDB2 transactions.
+ * Directories have to be below oecd.import.root.
+ * Name and URL of a dossier come from the ID and PUBLICATION fields of its OPINION block. Files that can not be
+ * imported end up in the failure manifest with the reason.
+ */
+@Service
+public class DossierImportJob {
+
+    private static final int MAX_FAILURES = 10000;
+    private static final int STATUS_FAILURES = 100;
+
+    @Autowired
+    private DossierService dossierService;
+
+    @Autowired
+    private RdfMaterializer rdfMaterializer;
+
+    @Autowired
+    private GraphCommitQueue graphCommitQueue;
+
+    @Value("${oecd.import.batch-size:100}")
+    private int batchSize = 100;
+
+    //0: all processors but one
+    @Value("${oecd.import.parallelism:0}")
+    private int parallelism;
+
+    //larger files are refused
+    @Value("${oecd.import.max-file-bytes:16777216}")
+    private int maxFileBytes = 16 * 1024 * 1024;
+
+    //only directories below it can be imported, empty: no directory imports
+    @Value("${oecd.import.root:}")
+    private String root = "";
+
+    /**
+     * The XML files of a zip or directory
+     */
+    private interface Source extends AutoCloseable {
+        List<String> names() throws IOException;
+
+        InputStream open(String name) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * A file that was parsed and validated, waiting to be saved
+     */
+    private static class Candidate {
+        final String file;
+        final Dossier dossier;
+
+        Candidate(String file, Dossier dossier) {
+            this.file = file;
+            this.dossier = dossier;
+        }
+    }
+
+    private ForkJoinPool pool;
+    private Thread driver;
+    private volatile String state = "idle";
+    private volatile boolean stopRequested;
+
+    private volatile String source;
+    private volatile long total;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Long startedAt;
+    private volatile Long finishedAt;
+    private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stop();
+        Thread running = driver;
+        if (running != null)
+            running.join();
+        pool.shutdown();
+    }
+
+    /**
+     * Imports the XML files in a zip
+     * @param delete delete the zip when the import is over (an upload)
+     * @return false if an import is busy already
+     */
+    public synchronized boolean startZip(File zip, String name, boolean delete) {
+        if (isRunning())
+            return false;
+        return run(name, () -> new ZipSource(zip, delete));
+    }
+
+    /**
+     * Imports the XML files in a directory and its subdirectories
+     * @return false if an import is busy already
+     */
+    public synchronized boolean startDirectory(File directory) {
+        if (isRunning())
+            return false;
+        return run(directory.getAbsolutePath(), () -> new DirectorySource(directory.toPath()));
+    }
+
+    /**
+     * @param directory path relative to oecd.import.root
+     * @return the directory, null when directory imports are off or the path is not a directory below the root
+     */
+    public File resolveDirectory(String directory) throws IOException {
+        if (root == null || root.isEmpty())
+            return null;
+        Path rootPath = Paths.get(root).toRealPath();
+        Path path = rootPath.resolve(directory).normalize();
+        if (!path.startsWith(rootPath) || !Files.isDirectory(path))
+            return null;
+        //symbolic links out of the root
+        path = path.toRealPath();
+        return path.startsWith(rootPath) ? path.toFile() : null;
+    }
+
+    /**
+     * Asks the running import to stop after the current batch
+     */
+    public void stop() {
+        if (isRunning()) {
+            stopRequested = true;
+            state = "stopping";
+        }
+    }
+
+    public ImportStatus getStatus() {
+        Long start = startedAt;
+        Long end = finishedAt;
+        long elapsed = start == null ? 0 : (end != null ? end : System.currentTimeMillis()) - start;
+        Map<String, String> first = new LinkedHashMap<String, String>();
+        synchronized (failures) {
+            for (Map.Entry<String, String> failure : failures.entrySet()) {
+                if (first.size() == STATUS_FAILURES)
+                    break;
+                first.put(failure.getKey(), failure.getValue());
+            }
+        }
+        return new ImportStatus(state, source, total, processed.get(), imported.get(), failed.get(),
+                start, end, elapsed, first);
+    }
+
+    /**
+     * @return every failure of the current or last import (up to 10000), by file name
+     */
+    public Map<String, String> getFailures() {
+        synchronized (failures) {
+            return new LinkedHashMap<String, String>(failures);
+        }
+    }
+
+    private boolean isRunning() {
+        return driver != null && driver.isAlive();
+    }
+
+    private interface SourceOpener {
+        Source open() throws IOException;
+    }
+
+    private boolean run(String name, SourceOpener opener) {
+        stopRequested = false;
+        state = "running";
+        source = name;
+        total = 0;
+        processed.set(0);
+        imported.set(0);
+        failed.set(0);
+        synchronized (failures) {
+            failures.clear();
+        }
+        startedAt = System.currentTimeMillis();
+        finishedAt = null;
+        driver = new Thread(() -> {
+            try (Source files = opener.open()) {
+                List<String> names = files.names();
+                total = names.size();
+                for (int from = 0; from < names.size() && !stopRequested; from += batchSize)
+                    importBatch(files, names.subList(from, Math.min(from + batchSize, names.size())));
+                state = stopRequested ? "stopped" : "done";
+            } catch (Exception e) {
+                System.out.println("Import of " + name + " failed: " + e);
+                state = "failed";
+            } finally {
+                finishedAt = System.currentTimeMillis();
+                System.out.println("Import " + state + ", " + imported.get() + " of " + processed.get()
+                        + " files imported from " + name);
+            }
+        }, "dossier-import");
+        driver.setDaemon(true);
+        driver.start();
+        return true;
+    }
+
+    //parses the batch in parallel, saves the valid files and waits until their graphs are committed
+    private void importBatch(Source files, List<String> names) throws Exception {
+        List<Candidate> candidates = pool.submit(() -> names.parallelStream()
+                .map(name -> parse(files, name))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())).get();
+        if (candidates.isEmpty())
+            return;
+        try {
+            dossierService.importDossiers(candidates.stream().map(c -> c.dossier).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            for (Candidate candidate : candidates)
+                fail(candidate.file, "Not saved: " + e.getMessage());
+            return;
+        }
+        imported.addAndGet(candidates.size());
+        List<CompletableFuture<GraphDelta>> writes = pool.submit(() -> candidates.parallelStream()
+                .map(this::convertAndQueue)
+                .collect(Collectors.toList())).get();
+        for (CompletableFuture<GraphDelta> write : writes) {
+            if (write != null)
+                write.join();
+        }
+    }
+
+    /**
+     * @return the new dossier, null if the file is not valid
+     */
+    private Candidate parse(Source files, String name) {
+        try {
+            String xml = DossierRdfConverter.normalize(read(files, name));
+            Model model = rdfMaterializer.convert(xml);
+            ResIterator opinions = model.listSubjectsWithProperty(RDF.type, OECDVariables.OPINION);
+            if (!opinions.hasNext()) {
+                fail(name, "No OPINION block");
+                return null;
+            }
+            Resource opinion = opinions.next();
+            Dossier dossier = new Dossier();
+            String identifier = literal(opinion.getProperty(DCTerms.identifier));
+            dossier.setName(identifier != null && !identifier.isEmpty() ? identifier : baseName(name));
+            dossier.setUrl(literal(opinion.getProperty(DCTerms.source)));
+            dossier.setXML(xml);
+            return new Candidate(name, dossier);
+        } catch (Exception e) {
+            fail(name, String.valueOf(e.getMessage()));
+            return null;
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    //converts the XML again, its URL field was changed to the new id
+    private CompletableFuture<GraphDelta> convertAndQueue(Candidate candidate) {
+        long id = candidate.dossier.getId();
+        try {
+            Model model = rdfMaterializer.convert(candidate.dossier.getXML());
+            return graphCommitQueue.replaceGraph(id, model).whenComplete((delta, e) -> {
+                if (e != null)
+                    fail(candidate.file, "Saved as dossier " + id + ", RDF not written: " + e.getMessage());
+            });
+        } catch (Exception e) {
+            fail(candidate.file, "Saved as dossier " + id + ", RDF not written: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String read(Source files, String name) throws IOException {
+        try (InputStream in = files.open(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > maxFileBytes)
+                    throw new IOException("Larger than " + maxFileBytes + " bytes");
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String literal(Statement statement) {
+        return statement != null && statement.getObject().isLiteral() ? statement.getString() : null;
+    }
+
+    private static String baseName(String name) {
+        String file = name.substring(name.lastIndexOf('/') + 1);
+        return file.substring(0, file.length() - ".xml".length());
+    }
+
+    private static boolean isXml(String name) {
+        return name.toLowerCase().endsWith(".xml");
+    }
+
+    private void fail(String file, String error) {
+        failed.incrementAndGet();
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES)
+                failures.put(file, error);
+        }
+    }
+
+    private static class ZipSource implements Source {
+        private final File file;
+        private final boolean delete;
+        private final ZipFile zip;
+
+        ZipSource(File file, boolean delete) throws IOException {
+            this.file = file;
+            this.delete = delete;
+            this.zip = new ZipFile(file);
+        }
+
+        @Override
+        public List<String> names() {
+            List<String> names = new ArrayList<String>();
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (!entry.isDirectory() && isXml(entry.getName()))
+                    names.add(entry.getName());
+            }
+            return names;
+        }
+
+        @Override
+        public InputStream open(String name) throws IOException {
+            return zip.getInputStream(zip.getEntry(name));
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+            if (delete)
+                Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private static class DirectorySource implements Source {
+        private final Path root;
+
+        DirectorySource(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public List<String> names() throws IOException {
+            try (Stream<Path> files = Files.walk(root)) {
+                //no symbolic links, those may point outside the directory
+                return files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+                        .map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                        .filter(DossierImportJob::isXml)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        public InputStream open(String name) throws IOException {
+            return Files.newInputStream(root.resolve(name));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
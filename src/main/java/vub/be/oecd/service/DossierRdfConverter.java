@@ -0,0 +1,124 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdfxml.xmlinput.SAX2Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.SAXException;
+import vub.be.oecd.util.BlocklyRdfReader;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.regex.Pattern;
+
+/**
+ * Converts the Blockly XML of a dossier into RDF, without temp files or intermediate documents.
+ * By default the XML is streamed with StAX (BlocklyRdfReader). With oecd.rdf.converter=xslt the output of
+ * transform.xslt is fed as SAX events straight into the RDF/XML parser instead.
+ */
+@Service
+public class DossierRdfConverter {
+
+    //base for relative URIs, eg. an OPINION block without URL
+    public static final String BASE = "http://wise10.vub.ac.be/resource/dossier/";
+
+    @Autowired
+    private XmlTransformService xmlTransformService;
+
+    //the URL field of the OPINION block, its value is the subject of the dossier
+    private static final Pattern URL_FIELD = Pattern.compile("(<field name=\"URL\">)[^<]*(</field>)");
+
+    //stax or xslt
+    @Value("${oecd.rdf.converter:stax}")
+    private String converter = "stax";
+
+    /**
+     * The XML as it is stored: without the xhtml namespace the editor adds and without line breaks
+     */
+    public static String normalize(String xml) {
+        xml = xml.replace("xmlns=\"http://www.w3.org/1999/xhtml\"", "");
+        return xml.replaceAll("\r", "").replaceAll("\n", "");
+    }
+
+    /**
+     * @return the XML with the URL field of the (first) OPINION block set to the resource of the dossier,
+     * like the editor does for a new dossier
+     */
+    public static String withDossierUrl(String xml, long dossierId) {
+        return URL_FIELD.matcher(xml).replaceFirst("$1" + BASE + dossierId + "$2");
+    }
+
+    /**
+     * Converts the XML and collects the triples in a new in-memory model
+     */
+    public Model convert(String xml) throws TransformerException, SAXException {
+        Model model = ModelFactory.createDefaultModel();
+        convert(xml, StreamRDFLib.graph(model.getGraph()));
+        return model;
+    }
+
+    /**
+     * Converts the XML and sends every triple to the sink as soon as it is parsed
+     */
+    public void convert(String xml, StreamRDF sink) throws TransformerException, SAXException {
+        if ("xslt".equals(converter)) {
+            convertWithStylesheet(xml, sink);
+            return;
+        }
+        sink.start();
+        try {
+            BlocklyRdfReader.convert(new StringReader(xml), BASE, sink);
+        } catch (XMLStreamException e) {
+            throw new SAXException("Problem reading XML: " + e.getMessage(), e);
+        } finally {
+            sink.finish();
+        }
+    }
+
+    /**
+     * Conversion with transform.xslt, the reference implementation of the mapping
+     */
+    public void convertWithStylesheet(String xml, StreamRDF sink) throws TransformerException, SAXException {
+        sink.start();
+        SAX2Model parser = SAX2Model.create(BASE, ModelFactory.createModelForGraph(new SinkGraph(sink)));
+        try {
+            xmlTransformService.transform(new StreamSource(new StringReader(xml)), new SAXResult(parser));
+        } finally {
+            parser.close();
+            sink.finish();
+        }
+    }
+
+    /**
+     * Write-only graph forwarding the triples added by the RDF/XML parser to a StreamRDF
+     */
+    private static class SinkGraph extends GraphBase {
+
+        private final StreamRDF sink;
+
+        SinkGraph(StreamRDF sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void performAdd(Triple t) {
+            sink.triple(t);
+        }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(Triple triplePattern) {
+            return NullIterator.instance();
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package vub.be.oecd.service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.DossierSummary;
+
+import java.util.List;
 
 public interface DossierService {
 
     Iterable<Dossier> getAllDossiers();
     void saveDossier(Dossier dossier);
+    void importDossiers(List<Dossier> dossiers);
     Dossier getDossierById(long id);
     void deleteDossierById(long id);
+    long countDossiers();
+    List<Dossier> getDossiersAfter(long id, int count);
+    Page<DossierSummary> getDossierSummaries(String name, Pageable pageable);
 
 }
@@ -1,10 +1,23 @@
 package vub.be.oecd.service;
 
+import org.hibernate.ReplicationMode;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.DossierSummary;
 import vub.be.oecd.repository.DossierRepository;
 
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -13,6 +26,27 @@ public class DossierServiceImpl implements DossierService {
     @Autowired
     private DossierRepository dossierRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * The dossier table used IDENTITY before, make sure the table generator continues after the highest id.
+     * Hibernate hands out the block below the stored value, so it must be at least max(id) + the block size.
+     */
+    @PostConstruct
+    public void reconcileIdGenerator() {
+        long next = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from dossier", Long.class)
+                + Dossier.ID_ALLOCATION_SIZE;
+        Integer rows = jdbcTemplate.queryForObject("select count(*) from id_generator where name = 'dossier'", Integer.class);
+        if (rows == 0)
+            jdbcTemplate.update("insert into id_generator (name, next_val) values ('dossier', ?)", next);
+        else
+            jdbcTemplate.update("update id_generator set next_val = ? where name = 'dossier' and next_val < ?", next, next);
+    }
+
     @Override
     public Iterable<Dossier> getAllDossiers() {
         return dossierRepository.findAll();
@@ -23,6 +57,24 @@ public class DossierServiceImpl implements DossierService {
         this.dossierRepository.save(dossier);
     }
 
+    /**
+     * Inserts new dossiers in one transaction, in JDBC batches (hibernate.jdbc.batch_size).
+     * The URL field in their XML is set to the resource of their new id.
+     */
+    @Override
+    @Transactional
+    public void importDossiers(List<Dossier> dossiers) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        IdentifierGenerator ids = session.getFactory().getMetamodel().entityPersister(Dossier.class).getIdentifierGenerator();
+        for (Dossier dossier : dossiers) {
+            //the id comes from the table generator before the XML is set, so every row is inserted once (no update)
+            dossier.setId((Long) ids.generate(session, dossier));
+            dossier.setXML(DossierRdfConverter.withDossierUrl(dossier.getXML(), dossier.getId()));
+            //persist does not take an entity with an id, EXCEPTION inserts without looking for an existing row
+            session.replicate(dossier, ReplicationMode.EXCEPTION);
+        }
+    }
+
     @Override
     public Dossier getDossierById(long id) {
         Optional<Dossier> optional = dossierRepository.findById(id);
@@ -39,4 +91,29 @@ public class DossierServiceImpl implements DossierService {
     public void deleteDossierById(long id) {
         this.dossierRepository.deleteById(id);
     }
+
+    @Override
+    public long countDossiers() {
+        return dossierRepository.count();
+    }
+
+    /**
+     * Keyset paging, stays fast on large tables (no offset)
+     * @return at most count dossiers with an id above the given one, ordered by id
+     */
+    @Override
+    public List<Dossier> getDossiersAfter(long id, int count) {
+        return dossierRepository.findWithXmlByIdGreaterThan(id, PageRequest.of(0, count));
+    }
+
+    /**
+     * @param name part of the name, case insensitive, null or empty for all dossiers
+     * @return a page of id, name and url of the dossiers, without loading their XML
+     */
+    @Override
+    public Page<DossierSummary> getDossierSummaries(String name, Pageable pageable) {
+        if (name == null || name.isEmpty())
+            return dossierRepository.findAllProjectedBy(pageable);
+        return dossierRepository.findByNameContainingIgnoreCase(name, pageable);
+    }
 }
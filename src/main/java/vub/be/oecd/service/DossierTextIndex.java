@@ -0,0 +1,299 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.system.Txn;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.SearchHit;
+import vub.be.oecd.util.OECDVariables;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lucene full-text index over the literals of the dossier graphs, one document per literal with the fields
+ * dossier (id), report (block type of the report, Opinion for the dossier itself), predicate and value.
+ * The value is also indexed in a field named after its predicate, so queries can be scoped to a predicate,
+ * eg. cell_line:hacat or report:Acute_Toxicity AND Year:2008. Names are the part after #.
+ * The GraphCommitQueue updates the index right after it committed a batch of graphs. An empty index is
+ * rebuilt from the TDB2 dataset at startup. A rebuild writes a separate index and swaps it in at the end,
+ * so updates (and the saves waiting for them) do not wait for it.
+ */
+@Service
+public class DossierTextIndex {
+
+    public static final String DOSSIER = "dossier";
+    public static final String REPORT = "report";
+    public static final String PREDICATE = "predicate";
+    public static final String VALUE = "value";
+
+    private static final List<String> RESERVED = Arrays.asList(DOSSIER, REPORT, PREDICATE, VALUE);
+    private static final Node REPORT_TYPE = OECDVariables.REPORT.asNode();
+    private static final Node OPINION_TYPE = OECDVariables.OPINION.asNode();
+
+    @Autowired
+    private DossierGraphStore dossierGraphStore;
+
+    @Value("${oecd.lucene.location:lucene}")
+    private String location;
+
+    @Value("${oecd.lucene.max-results:100}")
+    private int maxResults = 100;
+
+    private final Analyzer analyzer = analyzer();
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    //one rebuild at a time
+    private final Object rebuildLock = new Object();
+    //graphs updated while a rebuild runs, written again after its swap; guarded by this
+    private Map<Long, Model> updatedDuringRebuild;
+
+    //identifiers and names are matched as a whole, values and predicate fields are tokenized
+    private static Analyzer analyzer() {
+        Map<String, Analyzer> keywords = new HashMap<String, Analyzer>();
+        keywords.put(DOSSIER, new KeywordAnalyzer());
+        keywords.put(REPORT, new KeywordAnalyzer());
+        keywords.put(PREDICATE, new KeywordAnalyzer());
+        return new PerFieldAnalyzerWrapper(new StandardAnalyzer(), keywords);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        File file = new File(location);
+        if (!file.isDirectory() && !file.mkdirs())
+            throw new IllegalStateException("Can not create Lucene location " + file.getAbsolutePath());
+        directory = FSDirectory.open(file.toPath());
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        searcherManager = new SearcherManager(writer, null);
+        System.out.println("Lucene index opened at " + file.getAbsolutePath());
+        if (writer.getDocStats().numDocs == 0)
+            rebuild();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (writer != null) {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+            System.out.println("Lucene index closed");
+        }
+    }
+
+    /**
+     * Replaces the documents of the given dossiers by the literals of their new graphs and commits,
+     * a null graph only deletes the documents of the dossier. The changes are visible to searches when this returns.
+     */
+    public synchronized void update(Map<Long, Model> graphs) throws IOException {
+        if (updatedDuringRebuild != null)
+            updatedDuringRebuild.putAll(graphs);
+        write(graphs);
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Indexes all dossier graphs of the TDB2 dataset again, into a separate index that replaces the current one
+     * when it is complete. Searches use the current index until then.
+     * @return number of dossiers indexed
+     */
+    public int rebuild() throws IOException {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            //graphs committed from here on may be missing in the snapshot that is indexed
+            synchronized (this) {
+                updatedDuringRebuild = new LinkedHashMap<Long, Model>();
+            }
+            Path rebuildLocation = Files.createTempDirectory(directory.getDirectory().toAbsolutePath().getParent(),
+                    "lucene-rebuild");
+            try (FSDirectory rebuilt = FSDirectory.open(rebuildLocation)) {
+                int dossiers;
+                try (IndexWriter rebuiltWriter = new IndexWriter(rebuilt, new IndexWriterConfig(analyzer))) {
+                    dossiers = indexAll(rebuiltWriter);
+                    rebuiltWriter.commit();
+                }
+                synchronized (this) {
+                    writer.deleteAll();
+                    writer.addIndexes(rebuilt);
+                    write(updatedDuringRebuild);
+                    writer.commit();
+                    searcherManager.maybeRefreshBlocking();
+                }
+                System.out.println("Lucene index rebuilt, " + dossiers + " dossiers in "
+                        + (System.currentTimeMillis() - start) + " ms");
+                return dossiers;
+            } finally {
+                synchronized (this) {
+                    updatedDuringRebuild = null;
+                }
+                IOUtils.rm(rebuildLocation);
+            }
+        }
+    }
+
+    //replaces the documents of the dossiers, a null graph deletes them
+    private void write(Map<Long, Model> graphs) throws IOException {
+        for (Map.Entry<Long, Model> graph : graphs.entrySet()) {
+            Term dossier = new Term(DOSSIER, String.valueOf(graph.getKey()));
+            if (graph.getValue() == null)
+                writer.deleteDocuments(dossier);
+            else
+                writer.updateDocuments(dossier, documents(graph.getKey(), graph.getValue().getGraph()));
+        }
+    }
+
+    //adds the documents of all dossier graphs of one snapshot of the dataset to the target
+    private int indexAll(IndexWriter target) {
+        return Txn.calculateRead(dossierGraphStore.getDataset(), () -> {
+            int count = 0;
+            Iterator<Node> names = dossierGraphStore.getDataset().asDatasetGraph().listGraphNodes();
+            while (names.hasNext()) {
+                Node name = names.next();
+                Long id = dossierId(name);
+                if (id == null)
+                    continue;
+                try {
+                    indexGraph(target, id, dossierGraphStore.getDataset().asDatasetGraph().getGraph(name));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                count++;
+            }
+            return count;
+        });
+    }
+
+    //package-private so tests can hold a rebuild halfway
+    void indexGraph(IndexWriter target, long dossierId, Graph graph) throws IOException {
+        target.addDocuments(documents(dossierId, graph));
+    }
+
+    /**
+     * @param queryString Lucene query, terms without field are matched against all values
+     * @param limit maximum number of hits, capped by oecd.lucene.max-results
+     * @throws ParseException when the query is not valid
+     */
+    public List<SearchHit> search(String queryString, int limit) throws ParseException, IOException {
+        Query query = new QueryParser(VALUE, analyzer).parse(queryString);
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            ScoreDoc[] scoreDocs = searcher.search(query, Math.max(1, Math.min(limit, maxResults))).scoreDocs;
+            List<SearchHit> hits = new ArrayList<SearchHit>(scoreDocs.length);
+            for (ScoreDoc scoreDoc : scoreDocs) {
+                Document document = searcher.doc(scoreDoc.doc);
+                hits.add(new SearchHit(Long.parseLong(document.get(DOSSIER)), document.get(REPORT),
+                        document.get(PREDICATE), document.get(VALUE), scoreDoc.score));
+            }
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * @return number of indexed literals
+     */
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    //one document per literal of the graph
+    private static List<Document> documents(long dossierId, Graph graph) {
+        List<Document> documents = new ArrayList<Document>();
+        Map<Node, String> reports = new HashMap<Node, String>();
+        ExtendedIterator<Triple> triples = graph.find();
+        try {
+            while (triples.hasNext()) {
+                Triple triple = triples.next();
+                if (!triple.getObject().isLiteral())
+                    continue;
+                String predicate = localName(triple.getPredicate().getURI());
+                String value = triple.getObject().getLiteralLexicalForm();
+                Document document = new Document();
+                document.add(new StringField(DOSSIER, String.valueOf(dossierId), Field.Store.YES));
+                document.add(new StringField(REPORT, reports.computeIfAbsent(triple.getSubject(),
+                        subject -> reportType(graph, subject)), Field.Store.YES));
+                document.add(new StringField(PREDICATE, predicate, Field.Store.YES));
+                document.add(new TextField(VALUE, value, Field.Store.YES));
+                if (!RESERVED.contains(predicate))
+                    document.add(new TextField(predicate, value, Field.Store.NO));
+                documents.add(document);
+            }
+        } finally {
+            triples.close();
+        }
+        return documents;
+    }
+
+    //the block type of a report, besides ont:Report
+    private static String reportType(Graph graph, Node subject) {
+        String type = "";
+        ExtendedIterator<Triple> types = graph.find(subject, RDF.type.asNode(), Node.ANY);
+        try {
+            while (types.hasNext()) {
+                Node node = types.next().getObject();
+                if (node.isURI() && !node.equals(REPORT_TYPE)) {
+                    type = localName(node.getURI());
+                    if (!node.equals(OPINION_TYPE))
+                        break;
+                }
+            }
+        } finally {
+            types.close();
+        }
+        return type;
+    }
+
+    private static String localName(String uri) {
+        return uri.substring(Math.max(uri.lastIndexOf('#'), uri.lastIndexOf('/')) + 1);
+    }
+
+    //null for graphs that are not of a dossier, like the ontology
+    private static Long dossierId(Node graphName) {
+        if (!graphName.isURI() || !graphName.getURI().startsWith(DossierRdfConverter.BASE))
+            return null;
+        try {
+            return Long.parseLong(graphName.getURI().substring(DossierRdfConverter.BASE.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
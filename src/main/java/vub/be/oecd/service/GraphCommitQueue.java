@@ -0,0 +1,238 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.system.Txn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.util.GraphDelta;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single writer for the TDB2 dataset: graph replacements of many dossiers are grouped into one write transaction.
+ * A batch is committed when it holds oecd.tdb2.batch-size writes or when no new write arrived within
+ * oecd.tdb2.batch-wait-ms after the first one. After the commit the changed graphs are written to the
+ * DossierTextIndex, the future of every write completes once its batch is committed and indexed.
+ * Writes are applied in the order they were queued. Other named graphs, like the ontology, are written
+ * through the same queue but are not indexed.
+ */
+@Service
+public class GraphCommitQueue {
+
+    @Autowired
+    private DossierGraphStore dossierGraphStore;
+
+    @Autowired
+    private DossierTextIndex dossierTextIndex;
+
+    @Value("${oecd.tdb2.batch-size:64}")
+    private int batchSize = 64;
+
+    @Value("${oecd.tdb2.batch-wait-ms:5}")
+    private long batchWaitMillis = 5;
+
+    //callers block when this many writes are waiting
+    @Value("${oecd.tdb2.queue-size:1000}")
+    private int queueSize = 1000;
+
+    private static class Write {
+        final long dossierId;
+        final String graphName; //null for the graph of the dossier
+        final Model model;      //null removes the graph
+        final CompletableFuture<GraphDelta> future = new CompletableFuture<GraphDelta>();
+        GraphDelta delta;
+
+        Write(long dossierId, String graphName, Model model) {
+            this.dossierId = dossierId;
+            this.graphName = graphName;
+            this.model = model;
+        }
+
+        GraphDelta apply(DossierGraphStore store) {
+            if (graphName != null)
+                return store.replaceNamedGraphInTransaction(graphName, model.getGraph());
+            return model == null ? store.removeGraphInTransaction(dossierId) : store.replaceGraphInTransaction(dossierId, model);
+        }
+
+        @Override
+        public String toString() {
+            return graphName != null ? "graph " + graphName : "graph of dossier " + dossierId;
+        }
+    }
+
+    private BlockingQueue<Write> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong triplesAdded = new AtomicLong();
+    private final AtomicLong triplesRemoved = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<Write>(queueSize);
+        running = true;
+        writer = new Thread(this::run, "tdb2-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Commits the writes that are still queued and stops the writer
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        //no interrupt, that would close the file channels of TDB2 in the middle of a commit
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        List<Write> left = new ArrayList<Write>();
+        queue.drainTo(left);
+        for (Write write : left)
+            write.future.completeExceptionally(new IllegalStateException("Commit queue stopped"));
+    }
+
+    /**
+     * Queues the replacement of the graph of a dossier
+     * @return completes with the removed and added triples when the new graph is committed
+     */
+    public CompletableFuture<GraphDelta> replaceGraph(long dossierId, Model model) {
+        return queue(new Write(dossierId, null, model));
+    }
+
+    /**
+     * Queues the replacement of a named graph that does not belong to a dossier, eg. the ontology
+     * @return completes with the removed and added triples when the new graph is committed
+     */
+    public CompletableFuture<GraphDelta> replaceNamedGraph(String graphName, Model model) {
+        return queue(new Write(-1, graphName, model));
+    }
+
+    private CompletableFuture<GraphDelta> queue(Write write) {
+        if (!running) {
+            write.future.completeExceptionally(new IllegalStateException("Commit queue stopped"));
+            return write.future;
+        }
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.future.completeExceptionally(e);
+        }
+        return write.future;
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getTriplesAdded() {
+        return triplesAdded.get();
+    }
+
+    public long getTriplesRemoved() {
+        return triplesRemoved.get();
+    }
+
+    /**
+     * Queues the removal of the graph of a dossier and of its documents in the DossierTextIndex
+     * @return completes with the removed triples when the removal is committed
+     */
+    public CompletableFuture<GraphDelta> removeGraph(long dossierId) {
+        return replaceGraph(dossierId, null);
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<Write>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                //only our own thread, stop taking new writes but commit what is queued
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        try {
+            Txn.executeWrite(dossierGraphStore.getDataset(), () -> {
+                for (Write write : batch)
+                    write.delta = write.apply(dossierGraphStore);
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                System.out.println("Problem writing " + batch.get(0) + ": " + e);
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            //the batch was rolled back, retry one by one so a bad write only fails itself
+            for (Write write : batch)
+                commit(Collections.singletonList(write));
+            return;
+        }
+        batches.incrementAndGet();
+        writes.addAndGet(batch.size());
+        //the last write of a dossier wins, like in the transaction; null for a removed graph
+        Map<Long, Model> changed = new LinkedHashMap<Long, Model>();
+        boolean anyChanged = false;
+        for (Write write : batch) {
+            if (write.delta.isEmpty())
+                continue;
+            anyChanged = true;
+            if (write.graphName == null)
+                changed.put(write.dossierId, write.model);
+        }
+        if (anyChanged)
+            dossierGraphStore.advanceGeneration();
+        if (!changed.isEmpty()) {
+            try {
+                dossierTextIndex.update(changed);
+            } catch (IOException | RuntimeException e) {
+                //the graphs are committed, a rebuild of the index brings it back in line
+                System.out.println("Problem indexing graphs of dossiers " + changed.keySet() + ": " + e);
+            }
+        }
+        for (Write write : batch) {
+            triplesAdded.addAndGet(write.delta.getAdded().size());
+            triplesRemoved.addAndGet(write.delta.getRemoved().size());
+            write.future.complete(write.delta);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package vub.be.oecd.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.util.GzipStringConverter;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migration of the XML and script columns to gzip compressed blobs (see GzipStringConverter).
+ * At startup, before anything is written, text columns are changed to longblob (the text is kept as UTF-8 bytes).
+ * Once the application is ready the rows that are not compressed yet are compressed in the background,
+ * oecd.lob-migration.batch-size rows per batch. A row that was saved in the mean time is left alone.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class LobCompressionMigration {
+
+    //table and column of every compressed attribute
+    private static final String[][] COLUMNS = {
+            {"dossier", "xml"},
+            {"domain_concept", "xml"},
+            {"domain_concept", "script"}
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${oecd.lob-migration.batch-size:500}")
+    private int batchSize = 500;
+
+    @PostConstruct
+    public void migrateColumnTypes() {
+        for (String[] column : COLUMNS) {
+            List<String> types = jdbcTemplate.queryForList("select data_type from information_schema.columns"
+                    + " where table_schema = database() and table_name = ? and column_name = ?",
+                    String.class, column[0], column[1]);
+            //no table yet, Hibernate creates it with the right type
+            if (types.isEmpty() || types.get(0).equalsIgnoreCase("longblob"))
+                continue;
+            System.out.println("Changing " + column[0] + "." + column[1] + " from " + types.get(0) + " to longblob");
+            jdbcTemplate.execute("alter table " + column[0] + " modify " + column[1] + " longblob");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compressRows() {
+        Thread thread = new Thread(() -> {
+            for (String[] column : COLUMNS) {
+                try {
+                    compress(column[0], column[1]);
+                } catch (RuntimeException e) {
+                    System.out.println("Problem compressing " + column[0] + "." + column[1] + ": " + e);
+                }
+            }
+        }, "lob-compression");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void compress(String table, String column) {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        long compressed = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query("select id, " + column + " from " + table
+                    + " where id > ? and " + column + " is not null order by id limit ?",
+                    (resultSet, i) -> new Object[]{resultSet.getLong(1), resultSet.getBytes(2)}, lastId, batchSize);
+            if (rows.isEmpty())
+                break;
+            List<Object[]> updates = new ArrayList<Object[]>();
+            for (Object[] row : rows) {
+                byte[] value = (byte[]) row[1];
+                if (!GzipStringConverter.isCompressed(value))
+                    updates.add(new Object[]{GzipStringConverter.compress(GzipStringConverter.decompress(value)),
+                            row[0], value});
+            }
+            //only when the value is still the same, a save in the mean time is compressed already
+            if (!updates.isEmpty())
+                jdbcTemplate.batchUpdate("update " + table + " set " + column + " = ? where id = ? and "
+                        + column + " = ?", updates);
+            compressed += updates.size();
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        if (compressed > 0)
+            System.out.println("Compressed " + compressed + " rows of " + table + "." + column + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,103 @@
+package vub.be.oecd.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import vub.be.oecd.model.OntologySnapshot;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds the ontology used to create the Blockly blocks.
+ * The ontology is parsed once at startup, afterwards the file is watched and a new snapshot is swapped in
+ * when it changes. Readers always get a complete snapshot, never a half-loaded one.
+ * Listeners hear about every new snapshot, in the order they were loaded.
+ */
+@Service
+public class OntologyRegistry {
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${oecd.ontology.location:classpath:static/ontologie.ttl}")
+    private String location;
+
+    private final AtomicReference<OntologySnapshot> current = new AtomicReference<>();
+
+    private final List<Consumer<OntologySnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    //last modification time of the file the current snapshot was loaded from (0 if not a file, eg. in a jar)
+    private volatile long lastModified;
+
+    @PostConstruct
+    public void init() throws IOException {
+        reload();
+    }
+
+    /**
+     * @return the current version of the ontology, keep using the same snapshot for the whole request
+     */
+    public OntologySnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Calls the listener with the current snapshot right away and with every snapshot loaded afterwards,
+     * on the thread of the reload. Keep it short, eg. queue the work.
+     */
+    public synchronized void addListener(Consumer<OntologySnapshot> listener) {
+        listeners.add(listener);
+        listener.accept(current.get());
+    }
+
+    /**
+     * Checks whether the ontology file changed since it was loaded and reloads it if so.
+     * Only works when the ontology is a plain file (not packaged in a war/jar).
+     */
+    @Scheduled(fixedDelayString = "${oecd.ontology.watch-interval:5000}")
+    public void checkForChanges() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            if (resource.isFile() && resource.lastModified() != lastModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            System.out.println("Problem reloading ontology: " + e);
+        }
+    }
+
+    /**
+     * Parses the ontology and atomically replaces the current snapshot (copy-on-write).
+     * When parsing fails the current snapshot stays in place.
+     * @return the snapshot in use after the reload
+     */
+    public synchronized OntologySnapshot reload() throws IOException {
+        Resource resource = resourceLoader.getResource(location);
+        long modified = resource.isFile() ? resource.lastModified() : 0L;
+        byte[] content;
+        try (InputStream in = resource.getInputStream()) {
+            content = StreamUtils.copyToByteArray(in);
+        }
+
+        OntologySnapshot old = current.get();
+        if (old == null || !old.getVersion().equals(OntologySnapshot.versionOf(content))) {
+            OntologySnapshot snapshot = OntologySnapshot.parse(content);
+            current.set(snapshot);
+            System.out.println("Ontology loaded, version " + snapshot.getVersion());
+            for (Consumer<OntologySnapshot> listener : listeners)
+                listener.accept(snapshot);
+        }
+        lastModified = modified;
+        return current.get();
+    }
+}
@@ -0,0 +1,257 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.LiteralTypes;
+import vub.be.oecd.model.RdfStatus;
+import vub.be.oecd.util.GraphDelta;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the XML of saved dossiers to RDF and writes it to the TDB2 dataset (via the GraphCommitQueue), in the background.
+ * Saves of the same dossier are coalesced: only the latest XML that is still waiting gets converted, and
+ * at most one conversion per dossier runs at a time, so an older version can never overwrite a newer one.
+ */
+@Service
+public class RdfMaterializer {
+
+    @Autowired
+    private DossierRdfConverter dossierRdfConverter;
+
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    @Autowired
+    private GraphCommitQueue graphCommitQueue;
+
+    @Value("${oecd.rdf.threads:2}")
+    private int threads = 2;
+
+    //dossiers waiting for a thread, when full the saving thread does the conversion itself
+    @Value("${oecd.rdf.queue-size:1000}")
+    private int queueSize = 1000;
+
+    //statuses of the last saves that are kept, least recently saved go first
+    @Value("${oecd.rdf.max-statuses:10000}")
+    private int maxStatuses = 10000;
+
+    /**
+     * Materialization of one dossier, guarded by its own lock.
+     * Only in entries while there is work for the dossier, removed once it is idle.
+     */
+    private static class Entry {
+        String pendingXml;      //latest XML that is not converted yet
+        boolean pendingDelete;  //the dossier was deleted after its last save, remove the graph
+        boolean scheduled;      //a task for this dossier is queued or running
+        boolean removed;        //idle and out of entries, a new save needs a new entry
+        int coalesced;
+        RdfStatus status;
+    }
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+    private final Map<Long, RdfStatus> statuses = Collections.synchronizedMap(new LinkedHashMap<Long, RdfStatus>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RdfStatus> eldest) {
+            return size() > maxStatuses;
+        }
+    });
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "rdf-materializer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+            System.out.println("RDF materialization did not finish, " + executor.getQueue().size() + " dossiers left");
+    }
+
+    /**
+     * Schedules the conversion of the XML of a dossier, returns immediately
+     * @return the status, pending
+     */
+    public RdfStatus submit(long dossierId, String xml) {
+        return schedule(dossierId, xml);
+    }
+
+    /**
+     * Schedules the removal of the graph and the text index documents of a deleted dossier,
+     * in order with its saves: a save that still waits is not converted anymore
+     * @return the status, pending
+     */
+    public RdfStatus delete(long dossierId) {
+        return schedule(dossierId, null);
+    }
+
+    //null XML for a removal
+    private RdfStatus schedule(long dossierId, String xml) {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(dossierId, id -> new Entry());
+            boolean schedule;
+            RdfStatus status;
+            synchronized (entry) {
+                //became idle while it was looked up, there is a new one in entries
+                if (entry.removed)
+                    continue;
+                if (entry.pendingXml != null || entry.pendingDelete)
+                    entry.coalesced++;
+                entry.pendingXml = xml;
+                entry.pendingDelete = xml == null;
+                status = RdfStatus.pending(dossierId, System.currentTimeMillis(), entry.coalesced);
+                entry.status = status;
+                statuses.put(dossierId, status);
+                schedule = !entry.scheduled;
+                entry.scheduled = true;
+            }
+            if (schedule)
+                executor.execute(() -> drain(dossierId, entry));
+            return status;
+        }
+    }
+
+    /**
+     * Converts XML that a job read earlier and queues its graph, in order with the saves of the dossier:
+     * nothing is written when the dossier was saved since the given time or a save is waiting for conversion,
+     * and a save during the conversion is converted and queued after this write.
+     * @return the write, null when it was skipped
+     */
+    public CompletableFuture<GraphDelta> rewrite(long dossierId, String xml, long since) throws Exception {
+        Entry entry;
+        while (true) {
+            entry = entries.computeIfAbsent(dossierId, id -> new Entry());
+            synchronized (entry) {
+                if (entry.removed)
+                    continue;
+                if (entry.scheduled || isSubmittedSince(dossierId, since)) {
+                    removeIfIdle(dossierId, entry);
+                    return null;
+                }
+                //saves of the dossier wait until this write is queued
+                entry.scheduled = true;
+                break;
+            }
+        }
+        try {
+            return graphCommitQueue.replaceGraph(dossierId, convert(xml));
+        } finally {
+            boolean schedule;
+            synchronized (entry) {
+                schedule = entry.pendingXml != null || entry.pendingDelete;
+                entry.scheduled = schedule;
+                removeIfIdle(dossierId, entry);
+            }
+            if (schedule) {
+                Entry scheduled = entry;
+                executor.execute(() -> drain(dossierId, scheduled));
+            }
+        }
+    }
+
+    /**
+     * @return the status of the last save of the dossier, null if it was not saved since startup
+     * (or not among the last oecd.rdf.max-statuses saved dossiers)
+     */
+    public RdfStatus getStatus(long dossierId) {
+        return statuses.get(dossierId);
+    }
+
+    /**
+     * @return whether the dossier was saved (and queued for conversion) after the given time
+     */
+    public boolean isSubmittedSince(long dossierId, long time) {
+        RdfStatus status = getStatus(dossierId);
+        return status != null && status.getSubmittedAt() >= time;
+    }
+
+    /**
+     * Converts the XML with the current ontology, literals are typed while the triples are produced
+     */
+    public Model convert(String xml) throws Exception {
+        Model model = ModelFactory.createDefaultModel();
+        LiteralTypes literalTypes = ontologyRegistry.getSnapshot().getLiteralTypes();
+        dossierRdfConverter.convert(xml, literalTypes.wrap(StreamRDFLib.graph(model.getGraph())));
+        return model;
+    }
+
+    //converts the pending XML of the dossier until there is none left
+    private void drain(long dossierId, Entry entry) {
+        while (true) {
+            String xml;
+            boolean delete;
+            RdfStatus status;
+            synchronized (entry) {
+                xml = entry.pendingXml;
+                delete = entry.pendingDelete;
+                entry.pendingXml = null;
+                entry.pendingDelete = false;
+                if (xml == null && !delete) {
+                    entry.scheduled = false;
+                    removeIfIdle(dossierId, entry);
+                    return;
+                }
+                status = entry.status.started(System.currentTimeMillis());
+                entry.status = status;
+                statuses.put(dossierId, status);
+            }
+            try {
+                long start = System.nanoTime();
+                Model model = delete ? ModelFactory.createDefaultModel() : convert(xml);
+                long converted = System.nanoTime();
+                //the write is grouped with those of other dossiers, writes of a dossier stay in order
+                CompletableFuture<GraphDelta> write = delete ? graphCommitQueue.removeGraph(dossierId)
+                        : graphCommitQueue.replaceGraph(dossierId, model);
+                write.whenComplete((delta, e) -> {
+                    if (e != null) {
+                        finish(dossierId, status, status.failed(System.currentTimeMillis(), String.valueOf(e.getMessage())));
+                    } else {
+                        finish(dossierId, status, status.done(System.currentTimeMillis(), (converted - start) / 1000000,
+                                (System.nanoTime() - converted) / 1000000, model.size(),
+                                delta.getAdded().size(), delta.getRemoved().size()));
+                    }
+                });
+            } catch (Exception e) {
+                System.out.println("Problem materializing RDF of dossier " + dossierId + ": " + e);
+                finish(dossierId, status, status.failed(System.currentTimeMillis(), String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    private void finish(long dossierId, RdfStatus started, RdfStatus result) {
+        //unless a newer save is waiting or converted already, that one is the status now
+        statuses.replace(dossierId, started, result);
+    }
+
+    //called holding the lock of the entry
+    private void removeIfIdle(long dossierId, Entry entry) {
+        if (!entry.scheduled && entry.pendingXml == null && !entry.pendingDelete) {
+            entry.removed = true;
+            entries.remove(dossierId, entry);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package vub.be.oecd.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.RematerializationStatus;
+import vub.be.oecd.util.GraphDelta;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Admin job that converts the stored XML of every dossier again and rewrites the graphs,
+ * eg. after a change of transform.xslt or the ontology.
+ * Dossiers are read in pages by id (keyset), the XML of a page is converted in parallel on a fork-join pool
+ * and the graphs are written through the GraphCommitQueue, so many dossiers share one transaction and
+ * interactive saves keep going in between. Writes go via the RdfMaterializer, so they stay in order with
+ * the saves of the same dossier. After every page the checkpoint moves to its last id,
+ * a stopped or failed job can be resumed from there.
+ */
+@Service
+public class RematerializationJob {
+
+    private static final int MAX_FAILURES = 100;
+
+    @Autowired
+    private DossierService dossierService;
+
+    @Autowired
+    private RdfMaterializer rdfMaterializer;
+
+    @Value("${oecd.rematerialize.page-size:200}")
+    private int pageSize = 200;
+
+    //0: all processors but one
+    @Value("${oecd.rematerialize.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+    //written under the lock of the job, read by shutdown without it
+    private volatile Thread driver;
+    private volatile String state = "idle";
+    private volatile boolean stopRequested;
+
+    private volatile long total;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long checkpoint;
+    private volatile Long startedAt;
+    private volatile Long finishedAt;
+    private final Map<Long, String> failures = new LinkedHashMap<Long, String>();
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stop();
+        Thread running = driver;
+        if (running != null)
+            running.join();
+        pool.shutdown();
+    }
+
+    /**
+     * Starts a new run after the given dossier id (0 for all dossiers)
+     * @return false if a run is busy already
+     */
+    public synchronized boolean start(long fromId) {
+        if (driver != null && driver.isAlive())
+            return false;
+        processed.set(0);
+        written.set(0);
+        skipped.set(0);
+        failed.set(0);
+        synchronized (failures) {
+            failures.clear();
+        }
+        checkpoint = fromId;
+        return run();
+    }
+
+    /**
+     * Continues the last run after its checkpoint, counters keep going
+     * @return false if a run is busy already
+     */
+    public synchronized boolean resume() {
+        if (driver != null && driver.isAlive())
+            return false;
+        return run();
+    }
+
+    /**
+     * Asks the running job to stop after the current page
+     */
+    public synchronized void stop() {
+        if (driver != null && driver.isAlive()) {
+            stopRequested = true;
+            state = "stopping";
+        }
+    }
+
+    public RematerializationStatus getStatus() {
+        Long start = startedAt;
+        Long end = finishedAt;
+        long elapsed = start == null ? 0 : (end != null ? end : System.currentTimeMillis()) - start;
+        Map<Long, String> failuresCopy;
+        synchronized (failures) {
+            failuresCopy = new LinkedHashMap<Long, String>(failures);
+        }
+        return new RematerializationStatus(state, total, processed.get(), written.get(), skipped.get(), failed.get(),
+                checkpoint, start, end, elapsed, failuresCopy);
+    }
+
+    private boolean run() {
+        stopRequested = false;
+        state = "running";
+        total = dossierService.countDossiers();
+        startedAt = System.currentTimeMillis();
+        finishedAt = null;
+        long runStart = startedAt;
+        driver = new Thread(() -> {
+            try {
+                while (!stopRequested) {
+                    List<Dossier> page = dossierService.getDossiersAfter(checkpoint, pageSize);
+                    if (page.isEmpty())
+                        break;
+                    processPage(page, runStart);
+                    checkpoint = page.get(page.size() - 1).getId();
+                }
+                state = stopRequested ? "stopped" : "done";
+            } catch (Exception e) {
+                System.out.println("Rematerialization failed after dossier " + checkpoint + ": " + e);
+                state = "failed";
+            } finally {
+                finishedAt = System.currentTimeMillis();
+                System.out.println("Rematerialization " + state + ", " + processed.get() + " dossiers processed");
+            }
+        }, "rematerialization");
+        driver.setDaemon(true);
+        driver.start();
+        return true;
+    }
+
+    //converts the page in parallel, queues the writes and waits until they are committed
+    private void processPage(List<Dossier> page, long runStart) throws Exception {
+        List<CompletableFuture<GraphDelta>> writes = pool.submit(() -> page.parallelStream()
+                .map(dossier -> convertAndQueue(dossier, runStart))
+                .collect(Collectors.toList())).get();
+        for (CompletableFuture<GraphDelta> write : writes) {
+            if (write != null)
+                write.join();
+        }
+    }
+
+    private CompletableFuture<GraphDelta> convertAndQueue(Dossier dossier, long runStart) {
+        long id = dossier.getId();
+        try {
+            //a dossier saved by a user during the run has its own, newer conversion
+            CompletableFuture<GraphDelta> write = dossier.getXML() == null ? null
+                    : rdfMaterializer.rewrite(id, dossier.getXML(), runStart);
+            if (write == null) {
+                skipped.incrementAndGet();
+                return null;
+            }
+            return write.handle((delta, e) -> {
+                if (e != null)
+                    fail(id, e);
+                else
+                    written.incrementAndGet();
+                return delta;
+            });
+        } catch (Exception e) {
+            fail(id, e);
+            return null;
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    private void fail(long id, Throwable e) {
+        failed.incrementAndGet();
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES)
+                failures.put(id, String.valueOf(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package vub.be.oecd.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized SPARQL results, keyed by the normalized query and format plus the generation of the dataset.
+ * Every commit that changes a graph advances the generation (see DossierGraphStore), after which all cached
+ * results are stale and dropped. Bounded by number of entries and total size, least recently used goes first.
+ * Hits, misses and evictions are published as oecd.sparql.cache.* metrics.
+ */
+@Service
+public class SparqlResultCache {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${oecd.sparql.cache.max-entries:500}")
+    private int maxEntries = 500;
+
+    @Value("${oecd.sparql.cache.max-bytes:67108864}")
+    private long maxBytes = 64L * 1024 * 1024;
+
+    //larger results are not cached
+    @Value("${oecd.sparql.cache.max-entry-bytes:4194304}")
+    private int maxEntryBytes = 4 * 1024 * 1024;
+
+    private static class Entry {
+        final long generation;
+        final byte[] result;
+
+        Entry(long generation, byte[] result) {
+            this.generation = generation;
+            this.result = result;
+        }
+    }
+
+    //access order, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry == null)
+            return;
+        FunctionCounter.builder("oecd.sparql.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("oecd.sparql.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("oecd.sparql.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("oecd.sparql.cache.entries", this, SparqlResultCache::size).register(meterRegistry);
+        Gauge.builder("oecd.sparql.cache.bytes", this, SparqlResultCache::getBytes).register(meterRegistry);
+    }
+
+    /**
+     * @param normalizedQuery the query as serialized by Jena, so layout and comments do not matter
+     */
+    public static String key(String normalizedQuery, String format) {
+        return format + "\n" + normalizedQuery;
+    }
+
+    /**
+     * @return the cached result, null when there is none for this generation
+     */
+    public synchronized byte[] get(String key, long generation) {
+        dropStale(generation);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.generation != generation) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    /**
+     * Caches a result that was computed on data of the given generation
+     */
+    public synchronized void put(String key, long generation, byte[] result) {
+        if (result.length > maxEntryBytes || result.length > maxBytes)
+            return;
+        dropStale(generation);
+        //computed on older data than what is cached now
+        if (generation < this.generation)
+            return;
+        Entry old = entries.put(key, new Entry(generation, result));
+        if (old != null)
+            bytes -= old.result.length;
+        bytes += result.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().result.length;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    //a newer generation makes every cached result stale
+    private void dropStale(long generation) {
+        if (generation > this.generation) {
+            this.generation = generation;
+            evictions.addAndGet(entries.size());
+            entries.clear();
+            bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.OntologySnapshot;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Read-only SPARQL queries over the TDB2 dataset: one named graph per dossier plus the ontology
+ * in its own named graph (oecd.sparql.ontology-graph). The default graph is the union of all named graphs.
+ * Results are written to the output while they are produced, inside one read transaction,
+ * so editors keep saving while a query runs. The ontology graph is written by the GraphCommitQueue
+ * whenever the OntologyRegistry loads a new version, queries never write.
+ */
+@Service
+public class SparqlService {
+
+    /**
+     * Result formats that can be streamed
+     */
+    public enum Format {
+        JSON("application/sparql-results+json"),
+        CSV("text/csv"),
+        NTRIPLES("application/n-triples");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    @Autowired
+    private DossierGraphStore dossierGraphStore;
+
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    @Autowired
+    private GraphCommitQueue graphCommitQueue;
+
+    @Autowired
+    private SparqlResultCache sparqlResultCache;
+
+    @Value("${oecd.sparql.timeout-ms:30000}")
+    private long timeoutMillis = 30000;
+
+    @Value("${oecd.sparql.max-concurrent:4}")
+    private int maxConcurrent = 4;
+
+    @Value("${oecd.sparql.ontology-graph:http://ontologies.vub.be/oecd}")
+    private String ontologyGraph = "http://ontologies.vub.be/oecd";
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent);
+        ontologyRegistry.addListener(this::writeOntologyGraph);
+    }
+
+    /**
+     * @throws org.apache.jena.query.QueryParseException when the query is not valid SPARQL
+     */
+    public Query parse(String queryString) {
+        return QueryFactory.create(queryString);
+    }
+
+    /**
+     * @param requested requested format, null for the default of the query type
+     * @return the format, null when the query type can not be written in the requested format
+     */
+    public Format format(Query query, Format requested) {
+        if (query.isSelectType() || query.isAskType()) {
+            if (requested == null)
+                return Format.JSON;
+            return requested == Format.NTRIPLES ? null : requested;
+        }
+        if (query.isConstructType() || query.isDescribeType()) {
+            if (requested == null)
+                return Format.NTRIPLES;
+            return requested == Format.NTRIPLES ? requested : null;
+        }
+        return null;
+    }
+
+    /**
+     * Takes one of the oecd.sparql.max-concurrent query slots, give it back with release()
+     * @return false when all slots are in use
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Runs the query and writes the results in the given format, fails when the query takes longer than the timeout.
+     * Results of the same query on the same data come from the SparqlResultCache.
+     */
+    public void execute(Query query, Format format, OutputStream out) throws IOException {
+        //before the read transaction starts, so a cached result is never older than its generation
+        long generation = dossierGraphStore.getGeneration();
+        String key = SparqlResultCache.key(query.serialize(), format.name());
+        byte[] cached = sparqlResultCache.get(key, generation);
+        if (cached != null) {
+            out.write(cached);
+            return;
+        }
+        CopyingOutputStream copy = new CopyingOutputStream(out, sparqlResultCache.getMaxEntryBytes());
+        Txn.executeRead(dossierGraphStore.getDataset(), () -> write(query, format, copy));
+        copy.flush();
+        if (copy.getCopy() != null)
+            sparqlResultCache.put(key, generation, copy.getCopy());
+    }
+
+    private void write(Query query, Format format, OutputStream out) {
+        try (QueryExecution execution = QueryExecutionFactory.create(query, dossierGraphStore.getDataset())) {
+            execution.getContext().set(TDB2.symUnionDefaultGraph, true);
+            //time to the first result and for the whole query
+            execution.setTimeout(timeoutMillis, timeoutMillis);
+            if (query.isSelectType()) {
+                if (format == Format.CSV)
+                    ResultSetFormatter.outputAsCSV(out, execution.execSelect());
+                else
+                    ResultSetFormatter.outputAsJSON(out, execution.execSelect());
+            } else if (query.isAskType()) {
+                if (format == Format.CSV)
+                    ResultSetFormatter.outputAsCSV(out, execution.execAsk());
+                else
+                    ResultSetFormatter.outputAsJSON(out, execution.execAsk());
+            } else {
+                Iterator<Triple> triples = query.isConstructType()
+                        ? execution.execConstructTriples() : execution.execDescribeTriples();
+                StreamRDF writer = StreamRDFWriter.getWriterStream(out, Lang.NTRIPLES);
+                writer.start();
+                while (triples.hasNext())
+                    writer.triple(triples.next());
+                writer.finish();
+            }
+        }
+    }
+
+    /**
+     * Passes everything on and keeps a copy, as long as the copy stays below a limit
+     */
+    private static class CopyingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            if (copy.size() > limit)
+                copy = null;
+        }
+
+        //null when the output was too large
+        byte[] getCopy() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+
+    public String getOntologyGraph() {
+        return ontologyGraph;
+    }
+
+    /**
+     * Queues the ontology for its named graph, only the triples that changed since the previous version are written
+     */
+    private void writeOntologyGraph(OntologySnapshot snapshot) {
+        graphCommitQueue.replaceNamedGraph(ontologyGraph, snapshot.getModel()).whenComplete((delta, e) -> {
+            if (e != null)
+                System.out.println("Problem writing ontology version " + snapshot.getVersion() + ": " + e);
+        });
+    }
+}
@@ -0,0 +1,151 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vub.be.oecd.model.BlockDefinition;
+import vub.be.oecd.model.DomainConceptSummary;
+import vub.be.oecd.model.OntologySnapshot;
+import vub.be.oecd.model.ReportBlockDefinition;
+import vub.be.oecd.model.Suggestion;
+import vub.be.oecd.util.PrefixIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Typeahead over the block names and rdfs:labels of the ontology and the names of the domain concepts.
+ * The ontology part is built once per ontology version, the domain concept part again when the version
+ * stamp of the domain concepts changes, both as a PrefixIndex. The names of the "composed of" dropdown of
+ * the domain concept page are kept with them.
+ */
+@Service
+public class SuggestService {
+
+    private static final Comparator<Suggestion> RANK = Comparator.<Suggestion>comparingInt(s -> s.getLabel().length())
+            .thenComparing(s -> s.getLabel().toLowerCase());
+
+    @Autowired
+    private OntologyRegistry ontologyRegistry;
+
+    @Autowired
+    private DomainConceptService domainConceptService;
+
+    @Value("${oecd.suggest.max-results:50}")
+    private int maxResults = 50;
+
+    private static class VersionedIndex {
+        final Object version;
+        final PrefixIndex<Suggestion> index;
+        final List<String> names;   //block or domain concept names
+
+        VersionedIndex(Object version, PrefixIndex<Suggestion> index, List<String> names) {
+            this.version = version;
+            this.index = index;
+            this.names = Collections.unmodifiableList(names);
+        }
+    }
+
+    private volatile VersionedIndex ontologyIndex;
+    private volatile VersionedIndex conceptIndex;
+
+    /**
+     * @param limit maximum number of suggestions, capped by oecd.suggest.max-results
+     * @return the suggestions for the words of the query, shortest label first
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        int max = Math.max(1, Math.min(limit, maxResults));
+        List<Suggestion> suggestions = new ArrayList<Suggestion>(ontologyIndex(ontologyRegistry.getSnapshot()).index.search(query, max));
+        suggestions.addAll(conceptIndex().index.search(query, max));
+        suggestions.sort(RANK);
+        return suggestions.size() > max ? new ArrayList<Suggestion>(suggestions.subList(0, max)) : suggestions;
+    }
+
+    /**
+     * @return the options of the "composed of" dropdown of the domain concepts: the block names of the ontology
+     * (reports by name, other blocks by message) followed by the domain concept names
+     */
+    public List<String> getComposedOfNames() {
+        List<String> names = new ArrayList<String>(ontologyIndex(ontologyRegistry.getSnapshot()).names);
+        names.addAll(conceptIndex().names);
+        return names;
+    }
+
+    private VersionedIndex ontologyIndex(OntologySnapshot snapshot) {
+        VersionedIndex current = ontologyIndex;
+        if (current != null && current.version.equals(snapshot.getVersion()))
+            return current;
+        synchronized (this) {
+            current = ontologyIndex;
+            if (current == null || !current.version.equals(snapshot.getVersion())) {
+                current = build(snapshot);
+                ontologyIndex = current;
+            }
+            return current;
+        }
+    }
+
+    private VersionedIndex conceptIndex() {
+        long version = domainConceptService.getDomainConceptVersion();
+        VersionedIndex current = conceptIndex;
+        if (current != null && current.version.equals(version))
+            return current;
+        synchronized (this) {
+            current = conceptIndex;
+            if (current == null || !current.version.equals(version)) {
+                PrefixIndex<Suggestion> index = new PrefixIndex<Suggestion>();
+                Set<String> names = new LinkedHashSet<String>();
+                for (DomainConceptSummary domainConcept : domainConceptService.getAllDomainConceptSummaries()) {
+                    String name = domainConcept.getName();
+                    if (name != null && names.add(name))
+                        index.add(name, new Suggestion(name, Suggestion.DOMAIN_CONCEPT, name));
+                }
+                current = new VersionedIndex(version, index.freeze(), new ArrayList<String>(names));
+                conceptIndex = current;
+            }
+            return current;
+        }
+    }
+
+    private static VersionedIndex build(OntologySnapshot snapshot) {
+        long start = System.currentTimeMillis();
+        PrefixIndex<Suggestion> index = new PrefixIndex<Suggestion>();
+        List<String> blockNames = new ArrayList<String>();
+        Set<String> added = new HashSet<String>();
+        //same names as the "composed of" dropdown of the domain concepts
+        for (BlockDefinition blockDefinition : snapshot.getCatalog().getBlockDefinitions()) {
+            String name = blockDefinition instanceof ReportBlockDefinition ? blockDefinition.getName() : blockDefinition.getMessage();
+            if (name != null && added.add(Suggestion.BLOCK + "\n" + name)) {
+                index.add(name, new Suggestion(name, Suggestion.BLOCK, name));
+                blockNames.add(name);
+            }
+        }
+        StmtIterator labels = snapshot.getModel().listStatements(null, RDFS.label, (String) null);
+        try {
+            while (labels.hasNext()) {
+                Statement statement = labels.next();
+                if (!statement.getObject().isLiteral() || statement.getSubject().getURI() == null)
+                    continue;
+                String label = ((Literal) statement.getObject()).getLexicalForm();
+                String uri = statement.getSubject().getURI();
+                if (added.add(Suggestion.LABEL + "\n" + uri + "\n" + label))
+                    index.add(label, new Suggestion(label, Suggestion.LABEL, uri));
+            }
+        } finally {
+            labels.close();
+        }
+        index.freeze();
+        System.out.println("Suggestions of ontology " + snapshot.getVersion() + " indexed, " + index.size()
+                + " labels in " + (System.currentTimeMillis() - start) + " ms");
+        return new VersionedIndex(snapshot.getVersion(), index, blockNames);
+    }
+}
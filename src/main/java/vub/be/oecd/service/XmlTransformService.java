@@ -0,0 +1,140 @@
+package vub.be.oecd.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transforms the Blockly XML of a dossier to RDF/XML with static/transform.xslt.
+ * The stylesheet is compiled once into Templates (thread safe), the Transformers created from it are not
+ * thread safe: at most oecd.xslt.pool-size are created per compiled stylesheet, a transformation waits when
+ * all of them are in use. The stylesheet is recompiled when the file changes.
+ */
+@Service
+public class XmlTransformService {
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${oecd.xslt.location:classpath:static/transform.xslt}")
+    private String location;
+
+    @Value("${oecd.xslt.pool-size:8}")
+    private int poolSize = 8;
+
+    private final TransformerFactory factory = TransformerFactory.newInstance();
+
+    private volatile CompiledStylesheet stylesheet;
+
+    /**
+     * Compiled stylesheet together with the idle transformers created from it
+     */
+    private static class CompiledStylesheet {
+        final Templates templates;
+        final long lastModified;
+        final int poolSize;
+        final BlockingQueue<Transformer> pool;
+        final AtomicInteger created = new AtomicInteger();
+
+        CompiledStylesheet(Templates templates, long lastModified, int poolSize) {
+            this.templates = templates;
+            this.lastModified = lastModified;
+            this.poolSize = poolSize;
+            this.pool = new ArrayBlockingQueue<Transformer>(poolSize);
+        }
+
+        //an idle transformer, a new one while there are less than poolSize, otherwise waits for one
+        Transformer borrow() throws TransformerException {
+            Transformer transformer = pool.poll();
+            if (transformer != null)
+                return transformer;
+            while (true) {
+                int count = created.get();
+                if (count >= poolSize)
+                    break;
+                if (created.compareAndSet(count, count + 1)) {
+                    try {
+                        return templates.newTransformer();
+                    } catch (TransformerConfigurationException | RuntimeException e) {
+                        created.decrementAndGet();
+                        throw e;
+                    }
+                }
+            }
+            try {
+                return pool.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TransformerException("Interrupted while waiting for a transformer", e);
+            }
+        }
+
+        void release(Transformer transformer) {
+            transformer.reset();
+            //never full, there are no more transformers than places
+            pool.offer(transformer);
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException, TransformerConfigurationException {
+        compile();
+    }
+
+    /**
+     * Runs the stylesheet on the source, pays only for the transformation itself
+     */
+    public void transform(Source source, Result result) throws TransformerException {
+        CompiledStylesheet current = stylesheet;
+        Transformer transformer = current.borrow();
+        try {
+            transformer.transform(source, result);
+        } finally {
+            current.release(transformer);
+        }
+    }
+
+    /**
+     * Recompiles the stylesheet when the file changed (only when it is a plain file, not in a war/jar)
+     */
+    @Scheduled(fixedDelayString = "${oecd.xslt.watch-interval:5000}")
+    public void checkForChanges() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            if (resource.isFile() && resource.lastModified() != stylesheet.lastModified) {
+                compile();
+            }
+        } catch (Exception e) {
+            System.out.println("Problem compiling stylesheet: " + e);
+        }
+    }
+
+    private synchronized void compile() throws IOException, TransformerConfigurationException {
+        Resource resource = resourceLoader.getResource(location);
+        long modified = resource.isFile() ? resource.lastModified() : 0L;
+        try (InputStream in = resource.getInputStream()) {
+            //the factory is not thread safe, compile() is synchronized
+            Templates templates = factory.newTemplates(new StreamSource(in));
+            stylesheet = new CompiledStylesheet(templates, modified, poolSize);
+        }
+        System.out.println("Stylesheet compiled: " + location);
+    }
+}
@@ -0,0 +1,263 @@
+package vub.be.oecd.util;
+
+import org.apache.jena.ext.xerces.util.XMLChar;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.IRIResolver;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Streaming Blockly XML -> RDF conversion, reads the XML with StAX and emits the triples to a StreamRDF.
+ * Implements the same mapping as static/transform.xslt (which stays available as fallback):
+ * - every OPINION block (not nested in another OPINION) becomes an ont:Opinion with its URL as subject,
+ *   ID as dcterms:identifier and PUBLICATION as dcterms:source
+ * - every block directly in its REPORTS statement, or in a next element somewhere below it, becomes a
+ *   report (blank node) linked with ont:contains, typed ont:Report and the block type
+ * - every field below a report (at any depth) becomes a property ont:{part after #} of that report,
+ *   fields with value "undefined" are skipped
+ * Only elements without namespace are matched, like in the stylesheet.
+ * Memory use only depends on the nesting depth of the XML, not on its size.
+ */
+public class BlocklyRdfReader {
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private static final Node OPINION = OECDVariables.OPINION.asNode();
+    private static final Node REPORT = OECDVariables.REPORT.asNode();
+    private static final Node CONTAINS = OECDVariables.CONTAINS.asNode();
+
+    /**
+     * An element that is open while reading
+     */
+    private static class Frame {
+        final String name;          //local name, null for elements in a namespace
+        final String nameAttribute;
+        Opinion opinion;            //OPINION block this element belongs to
+        boolean isOpinion;          //the OPINION block itself
+        boolean isReports;          //statement REPORTS of the OPINION block
+        boolean belowReports;       //somewhere inside the REPORTS statement
+        boolean isReport;           //block that became a report
+        //fields only
+        StringBuilder text;         //all text inside the field (string value)
+        StringBuilder textNode;     //text node being read
+        List<String> textNodes;     //text nodes directly in the field
+
+        Frame(String name, String nameAttribute) {
+            this.name = name;
+            this.nameAttribute = nameAttribute;
+        }
+
+        boolean is(String name) {
+            return name.equals(this.name);
+        }
+
+        void endTextNode() {
+            if (textNode != null && textNode.length() > 0) {
+                textNodes.add(textNode.toString());
+                textNode.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * OPINION block being read
+     */
+    private static class Opinion {
+        Node subject;
+        String identifier;
+        String source;
+        //reports seen before the URL field, normally the URL comes first
+        final List<Node> pendingReports = new ArrayList<Node>();
+    }
+
+    private final StreamRDF sink;
+    private final IRIResolver resolver;
+    private final Deque<Frame> frames = new ArrayDeque<Frame>();
+    //reports that are open, the fields inside belong to all of them
+    private final List<Node> reports = new ArrayList<Node>();
+
+    private BlocklyRdfReader(String base, StreamRDF sink) {
+        this.sink = sink;
+        this.resolver = IRIResolver.create(base);
+    }
+
+    /**
+     * Reads the XML and sends the triples to the sink (start/finish are left to the caller)
+     * @param xml Blockly XML of a dossier
+     * @param base base for relative URIs
+     */
+    public static void convert(Reader xml, String base, StreamRDF sink) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(xml);
+        try {
+            new BlocklyRdfReader(base, sink).read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    endTextNode();
+                    startElement(reader);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement(frames.pop());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text(reader);
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    endTextNode();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void startElement(XMLStreamReader reader) {
+        String namespace = reader.getNamespaceURI();
+        String name = namespace == null || namespace.isEmpty() ? reader.getLocalName() : null;
+        Frame parent = frames.peek();
+        Frame frame = new Frame(name, reader.getAttributeValue(null, "name"));
+        if (parent != null) {
+            frame.opinion = parent.opinion;
+            frame.belowReports = parent.belowReports || parent.isReports;
+        }
+
+        if (frame.is("block")) {
+            String type = reader.getAttributeValue(null, "type");
+            if (frame.opinion == null) {
+                if ("OPINION".equals(type)) {
+                    frame.isOpinion = true;
+                    frame.opinion = new Opinion();
+                }
+            } else if (parent.isReports || (parent.is("next") && parent.belowReports)) {
+                frame.isReport = true;
+                startReport(frame.opinion, type == null ? "" : type);
+            }
+        } else if (frame.is("statement")) {
+            frame.isReports = parent != null && parent.isOpinion && "REPORTS".equals(frame.nameAttribute);
+        } else if (frame.is("field")) {
+            frame.text = new StringBuilder();
+            frame.textNode = new StringBuilder();
+            frame.textNodes = new ArrayList<String>(1);
+        }
+        frames.push(frame);
+    }
+
+    private void endElement(Frame frame) {
+        if (frame.is("field")) {
+            frame.endTextNode();
+            Frame parent = frames.peek();
+            if (parent != null && parent.is("field"))
+                parent.text.append(frame.text);
+            if (parent != null && parent.isOpinion)
+                opinionField(parent.opinion, frame);
+            if (!reports.isEmpty())
+                reportField(frame);
+        } else if (frame.isReport) {
+            reports.remove(reports.size() - 1);
+        } else if (frame.isOpinion) {
+            endOpinion(frame.opinion);
+        }
+    }
+
+    private void text(XMLStreamReader reader) {
+        Frame frame = frames.peek();
+        if (frame != null && frame.is("field")) {
+            frame.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            frame.textNode.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+    }
+
+    //a child element, comment or processing instruction ends the current text node of a field
+    private void endTextNode() {
+        Frame frame = frames.peek();
+        if (frame != null && frame.is("field"))
+            frame.endTextNode();
+    }
+
+    private void startReport(Opinion opinion, String type) {
+        Node report = NodeFactory.createBlankNode();
+        sink.triple(Triple.create(report, RDF.type.asNode(), REPORT));
+        sink.triple(Triple.create(report, RDF.type.asNode(), uri(type)));
+        if (opinion.subject != null)
+            sink.triple(Triple.create(opinion.subject, CONTAINS, report));
+        else
+            opinion.pendingReports.add(report);
+        reports.add(report);
+    }
+
+    //fields of the OPINION block itself, the first one of each name counts
+    private void opinionField(Opinion opinion, Frame field) {
+        if ("URL".equals(field.nameAttribute) && opinion.subject == null) {
+            setSubject(opinion, field.text.toString());
+        } else if ("ID".equals(field.nameAttribute) && opinion.identifier == null) {
+            opinion.identifier = field.text.toString();
+        } else if ("PUBLICATION".equals(field.nameAttribute) && opinion.source == null) {
+            opinion.source = field.text.toString();
+        }
+    }
+
+    private void reportField(Frame field) {
+        if (field.textNodes.contains("undefined"))
+            return;
+        String name = field.nameAttribute == null ? "" : field.nameAttribute;
+        int index = name.indexOf('#');
+        String localName = index < 0 ? "" : name.substring(index + 1);
+        //the stylesheet can not create an element for these either
+        if (!XMLChar.isValidNCName(localName))
+            return;
+        Node predicate = NodeFactory.createURI(OECDVariables.NS + localName);
+        Node value = NodeFactory.createLiteral(field.textNodes.isEmpty() ? "" : field.textNodes.get(0));
+        for (Node report : reports)
+            sink.triple(Triple.create(report, predicate, value));
+    }
+
+    private void endOpinion(Opinion opinion) {
+        if (opinion.subject == null)
+            setSubject(opinion, "");
+        sink.triple(Triple.create(opinion.subject, DCTerms.identifier.asNode(),
+                NodeFactory.createLiteral(opinion.identifier == null ? "" : opinion.identifier)));
+        sink.triple(Triple.create(opinion.subject, DCTerms.source.asNode(),
+                NodeFactory.createLiteral(opinion.source == null ? "" : opinion.source)));
+    }
+
+    private void setSubject(Opinion opinion, String url) {
+        opinion.subject = uri(url);
+        sink.triple(Triple.create(opinion.subject, RDF.type.asNode(), OPINION));
+        for (Node report : opinion.pendingReports)
+            sink.triple(Triple.create(opinion.subject, CONTAINS, report));
+        opinion.pendingReports.clear();
+    }
+
+    private Node uri(String value) {
+        String resolved = resolver.resolveToStringSilent(value);
+        return NodeFactory.createURI(resolved != null ? resolved : value);
+    }
+}
@@ -0,0 +1,155 @@
+package vub.be.oecd.util;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Difference between the stored graph of a dossier and a newly converted one.
+ * The reports of a dossier are blank nodes, which get new labels on every conversion. Before comparing,
+ * every new blank node is matched with a stored one that has the same triples (its signature), blank nodes
+ * that are left are paired by rdf:type (eg. a report where one field was edited). Matched blank nodes keep
+ * their stored label, so only the triples that really changed are removed or added.
+ * After applyTo the graph holds exactly the new triples (up to blank node labels).
+ */
+public class GraphDelta {
+
+    private static final String TYPE = "> " + RDF.type.asNode() + " ";
+
+    private final List<Triple> added;
+    private final List<Triple> removed;
+
+    private GraphDelta(List<Triple> added, List<Triple> removed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @param stored the triples that are stored now
+     * @param updated the triples that should be stored
+     */
+    public static GraphDelta between(Graph stored, Graph updated) {
+        Set<Triple> storedTriples = new HashSet<Triple>(stored.find().toList());
+        List<Triple> updatedTriples = updated.find().toList();
+
+        Map<Node, Node> mapping = matchBlankNodes(storedTriples, updatedTriples);
+        Set<Triple> translated = new HashSet<Triple>(updatedTriples.size() * 2);
+        List<Triple> added = new ArrayList<Triple>();
+        for (Triple t : updatedTriples) {
+            Triple u = Triple.create(map(mapping, t.getSubject()), t.getPredicate(), map(mapping, t.getObject()));
+            if (translated.add(u) && !storedTriples.contains(u))
+                added.add(u);
+        }
+        List<Triple> removed = new ArrayList<Triple>();
+        for (Triple t : storedTriples) {
+            if (!translated.contains(t))
+                removed.add(t);
+        }
+        return new GraphDelta(added, removed);
+    }
+
+    /**
+     * Removes and adds the changed triples
+     */
+    public void applyTo(Graph graph) {
+        for (Triple t : removed)
+            graph.delete(t);
+        for (Triple t : added)
+            graph.add(t);
+    }
+
+    public List<Triple> getAdded() {
+        return added;
+    }
+
+    public List<Triple> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    private static Node map(Map<Node, Node> mapping, Node node) {
+        Node mapped = node.isBlank() ? mapping.get(node) : null;
+        return mapped != null ? mapped : node;
+    }
+
+    //new blank node -> stored blank node
+    private static Map<Node, Node> matchBlankNodes(Set<Triple> stored, List<Triple> updated) {
+        Map<Node, List<String>> storedDescriptions = describeBlankNodes(stored);
+        Map<Node, List<String>> updatedDescriptions = describeBlankNodes(updated);
+        Map<Node, Node> mapping = new HashMap<Node, Node>();
+        if (storedDescriptions.isEmpty() || updatedDescriptions.isEmpty())
+            return mapping;
+
+        //same signature: same triples apart from blank node labels
+        Map<String, Deque<Node>> bySignature = new HashMap<String, Deque<Node>>();
+        for (Map.Entry<Node, List<String>> e : storedDescriptions.entrySet())
+            bySignature.computeIfAbsent(signature(e.getValue()), k -> new ArrayDeque<Node>()).add(e.getKey());
+        List<Node> leftover = new ArrayList<Node>();
+        for (Map.Entry<Node, List<String>> e : updatedDescriptions.entrySet()) {
+            Deque<Node> candidates = bySignature.get(signature(e.getValue()));
+            if (candidates != null && !candidates.isEmpty())
+                mapping.put(e.getKey(), candidates.poll());
+            else
+                leftover.add(e.getKey());
+        }
+
+        //the rest is paired by rdf:type, a changed blank node keeps its label and only the changed triples are written
+        Map<String, Deque<Node>> byType = new HashMap<String, Deque<Node>>();
+        for (Deque<Node> unmatched : bySignature.values())
+            for (Node node : unmatched)
+                byType.computeIfAbsent(types(storedDescriptions.get(node)), k -> new ArrayDeque<Node>()).add(node);
+        for (Node node : leftover) {
+            Deque<Node> candidates = byType.get(types(updatedDescriptions.get(node)));
+            if (candidates != null && !candidates.isEmpty())
+                mapping.put(node, candidates.poll());
+        }
+        return mapping;
+    }
+
+    //every blank node with the triples it is in, blank nodes written as _:
+    private static Map<Node, List<String>> describeBlankNodes(Iterable<Triple> triples) {
+        Map<Node, List<String>> descriptions = new LinkedHashMap<Node, List<String>>();
+        for (Triple t : triples) {
+            if (t.getSubject().isBlank())
+                descriptions.computeIfAbsent(t.getSubject(), k -> new ArrayList<String>())
+                        .add("> " + t.getPredicate() + " " + label(t.getObject()));
+            if (t.getObject().isBlank())
+                descriptions.computeIfAbsent(t.getObject(), k -> new ArrayList<String>())
+                        .add("< " + label(t.getSubject()) + " " + t.getPredicate());
+        }
+        return descriptions;
+    }
+
+    private static String signature(List<String> description) {
+        return String.join("\n", new TreeSet<String>(description));
+    }
+
+    private static String types(List<String> description) {
+        Set<String> types = new TreeSet<String>();
+        for (String line : description)
+            if (line.startsWith(TYPE))
+                types.add(line);
+        return String.join("\n", types);
+    }
+
+    //blank nodes are written as _: (labels never match), other nodes as in N-Triples
+    private static String label(Node node) {
+        return node.isBlank() ? "_:" : node.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package vub.be.oecd.util;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores a string column gzip compressed (UTF-8) in a blob. The Blockly XML and scripts are very repetitive,
+ * they shrink to about a tenth.
+ * Values that do not start with the gzip header are read as plain UTF-8, those are rows from before the
+ * compression that were not migrated yet (see LobCompressionMigration).
+ */
+@Converter
+public class GzipStringConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String value) {
+        return value == null ? null : compress(value);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] column) {
+        return column == null ? null : decompress(column);
+    }
+
+    public static byte[] compress(String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length() / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(value.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String decompress(byte[] column) {
+        if (!isCompressed(column))
+            return new String(column, StandardCharsets.UTF_8);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(column))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(column.length * 8);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) != -1)
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return true if the value starts with the gzip header (1f 8b), text never does
+     */
+    public static boolean isCompressed(byte[] column) {
+        return column.length >= 2 && (column[0] & 0xff) == 0x1f && (column[1] & 0xff) == 0x8b;
+    }
+}
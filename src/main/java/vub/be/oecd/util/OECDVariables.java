@@ -22,4 +22,5 @@ public class OECDVariables {
     public static final Property ATTRIBUTEGROUP = ResourceFactory.createProperty(NS + "attributeGroup");
     public static final Property ORDER = ResourceFactory.createProperty(NS + "order");
     public static final Property PREDICATE = ResourceFactory.createProperty(NS + "predicate");
+    public static final Property OPTION_GROUP = ResourceFactory.createProperty(NS + "option_group");
 }
@@ -0,0 +1,132 @@
+package vub.be.oecd.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trie over the words of labels, for typeahead: a query matches a label when every word of the query is the start
+ * of a word of the label, so "cell li" finds "cell_line". Words are split on everything but letters and digits
+ * and compared in lower case.
+ * Every node keeps all entries below it, shortest label first. A search walks the characters of every query word
+ * and only checks the candidates of the word with the fewest, until it has enough results.
+ * Fill with add, call freeze, then search from any thread.
+ */
+public class PrefixIndex<T> {
+
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<Character, Node>(4);
+        final List<Integer> entries = new ArrayList<Integer>(2);
+    }
+
+    private final Node root = new Node();
+    private final List<List<String>> words = new ArrayList<List<String>>();
+    private final List<String> labels = new ArrayList<String>();
+    private final List<T> values = new ArrayList<T>();
+    private boolean frozen;
+
+    /**
+     * Adds a value under every word of the label
+     */
+    public void add(String label, T value) {
+        if (frozen)
+            throw new IllegalStateException("The index is frozen");
+        List<String> labelWords = words(label);
+        if (labelWords.isEmpty())
+            return;
+        int entry = values.size();
+        words.add(labelWords);
+        labels.add(label.toLowerCase(Locale.ROOT));
+        values.add(value);
+        for (String word : labelWords) {
+            Node node = root;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.children.computeIfAbsent(word.charAt(i), c -> new Node());
+                List<Integer> entries = node.entries;
+                //the same word twice in a label
+                if (entries.isEmpty() || entries.get(entries.size() - 1) != entry)
+                    entries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Ranks the entries of every node, no values can be added after this
+     */
+    public PrefixIndex<T> freeze() {
+        Comparator<Integer> rank = Comparator.<Integer>comparingInt(entry -> labels.get(entry).length())
+                .thenComparing(labels::get);
+        List<Node> todo = new ArrayList<Node>();
+        todo.add(root);
+        while (!todo.isEmpty()) {
+            Node node = todo.remove(todo.size() - 1);
+            node.entries.sort(rank);
+            todo.addAll(node.children.values());
+        }
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * @return the best matches, shortest label first, empty for a query without words
+     */
+    public List<T> search(String query, int limit) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+        //a match is among the entries of every query word, check those of the rarest one
+        Node node = null;
+        for (String word : queryWords) {
+            Node wordNode = root;
+            for (int i = 0; i < word.length() && wordNode != null; i++)
+                wordNode = wordNode.children.get(word.charAt(i));
+            if (wordNode == null)
+                return Collections.emptyList();
+            if (node == null || wordNode.entries.size() < node.entries.size())
+                node = wordNode;
+        }
+        List<T> result = new ArrayList<T>(Math.min(limit, node.entries.size()));
+        for (Integer entry : node.entries) {
+            if (matches(words.get(entry), queryWords)) {
+                result.add(values.get(entry));
+                if (result.size() == limit)
+                    break;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private static boolean matches(List<String> labelWords, List<String> queryWords) {
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String labelWord : labelWords) {
+                if (labelWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    static List<String> words(String text) {
+        List<String> result = new ArrayList<String>();
+        if (text == null)
+            return result;
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty())
+                result.add(word);
+        }
+        return result;
+    }
+}
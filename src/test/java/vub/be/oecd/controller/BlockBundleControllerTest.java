@@ -0,0 +1,24 @@
+package vub.be.oecd.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockBundleControllerTest {
+
+    @Test
+    void gzipIsServedWhenItsQualityIsAboveZero() {
+        assertThat(BlockBundleController.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(BlockBundleController.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(BlockBundleController.acceptsGzip("*")).isTrue();
+        assertThat(BlockBundleController.acceptsGzip("x-gzip")).isTrue();
+
+        assertThat(BlockBundleController.acceptsGzip(null)).isFalse();
+        assertThat(BlockBundleController.acceptsGzip("identity")).isFalse();
+        assertThat(BlockBundleController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(BlockBundleController.acceptsGzip("br, gzip ; q=0.000")).isFalse();
+        //an explicit refusal wins over the wildcard
+        assertThat(BlockBundleController.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(BlockBundleController.acceptsGzip("*;q=0, br")).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+package vub.be.oecd.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
+import vub.be.oecd.service.DomainConceptService;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DossierControllerTest {
+
+    private final DomainConceptService domainConceptService = mock(DomainConceptService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        DossierController controller = new DossierController();
+        ReflectionTestUtils.setField(controller, "domainConceptService", domainConceptService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        DomainConcept concept = new DomainConcept();
+        concept.setId(3L);
+        concept.setName("Hepatocyte_assay");
+        when(domainConceptService.getDomainConceptChanges(null)).thenReturn(new DomainConceptChanges(
+                10, true, Arrays.asList(concept), Collections.emptyList(), Collections.emptyList()));
+        when(domainConceptService.getDomainConceptChanges(5L)).thenReturn(new DomainConceptChanges(
+                10, false, Collections.emptyList(), Arrays.asList(concept), Arrays.asList(4L)));
+    }
+
+    @Test
+    void fullListHasTheVersionAsETag() throws Exception {
+        mockMvc.perform(get("/blocksFromDomainConcepts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"10\""))
+                .andExpect(jsonPath("$.full").value(true))
+                .andExpect(jsonPath("$.names[0]").value("Hepatocyte_assay"));
+
+        mockMvc.perform(get("/blocksFromDomainConcepts").header(HttpHeaders.IF_NONE_MATCH, "\"10\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void changesHaveTheirOwnETag() throws Exception {
+        mockMvc.perform(get("/blocksFromDomainConcepts").param("since", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"10-5\""))
+                .andExpect(jsonPath("$.full").value(false))
+                .andExpect(jsonPath("$.deleted[0]").value(4));
+
+        //the full list is not an answer to a request for changes
+        mockMvc.perform(get("/blocksFromDomainConcepts").param("since", "5").header(HttpHeaders.IF_NONE_MATCH, "\"10\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/blocksFromDomainConcepts").param("since", "5").header(HttpHeaders.IF_NONE_MATCH, "\"10-5\""))
+                .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,68 @@
+package vub.be.oecd.model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockCatalogTest {
+
+    private static OntologySnapshot snapshot;
+
+    @BeforeAll
+    static void loadOntology() throws Exception {
+        snapshot = OntologySnapshot.parse(StreamUtils.copyToByteArray(
+                new ClassPathResource("static/ontologie.ttl").getInputStream()));
+    }
+
+    @Test
+    void flatListMatchesTreeWalk() {
+        BlockCatalog catalog = snapshot.getCatalog();
+        List<String> expected = new ArrayList<>();
+        for (BlockDefinition report : catalog.getReports()) {
+            expected.add(report.getType());
+            for (BlockDefinition bd : report.getBlocks(true))
+                expected.add(bd.getType());
+        }
+        List<String> actual = new ArrayList<>();
+        for (BlockDefinition bd : catalog.getBlockDefinitions())
+            actual.add(bd.getType());
+
+        assertThat(catalog.getReports()).isNotEmpty();
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void childrenAreTheImmediateBlocksOfTheFirstDefinitionOfAType() {
+        BlockCatalog catalog = snapshot.getCatalog();
+        for (BlockDefinition bd : catalog.getBlockDefinitions()) {
+            BlockDefinition first = null;
+            for (BlockDefinition s : catalog.getBlockDefinitions()) {
+                if (s.getType().equals(bd.getType())) {
+                    first = s;
+                    break;
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            for (BlockDefinition child : first.getBlocks(false))
+                expected.add(child.getType());
+            List<String> actual = new ArrayList<>();
+            for (BlockDefinition child : catalog.getChildren(bd.getType()))
+                actual.add(child.getType());
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void opinionAndUnknownTypes() {
+        BlockCatalog catalog = snapshot.getCatalog();
+        assertThat(catalog.getChildren("OPINION")).isEqualTo(catalog.getReports());
+        assertThat(catalog.getChildren(null)).isEqualTo(catalog.getReports());
+        assertThat(catalog.getChildren("http://example.org/unknown")).isEmpty();
+    }
+}
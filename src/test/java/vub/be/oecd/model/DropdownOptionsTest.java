@@ -0,0 +1,63 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+import vub.be.oecd.util.OECDVariables;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DropdownOptionsTest {
+
+    private final Model model = ModelFactory.createDefaultModel();
+
+    private Resource dropdown(String name, String... options) {
+        Resource predicate = model.createResource(OECDVariables.NS + name)
+                .addProperty(RDFS.range, model.createResource(XSD.getURI() + "dropdown"));
+        for (int i = 0; i < options.length; i++)
+            predicate.addProperty(OECDVariables.OPTION_GROUP,
+                    model.createResource(OECDVariables.NS + name + "_" + i).addProperty(RDFS.label, options[i]));
+        return predicate;
+    }
+
+    @Test
+    void optionsOfEveryPredicate() {
+        dropdown("route", "oral");
+        dropdown("species", "rat");
+
+        DropdownOptions options = DropdownOptions.build(model);
+
+        assertThat(options.asMap()).containsOnlyKeys(OECDVariables.NS + "route", OECDVariables.NS + "species");
+        assertThat(options.get(OECDVariables.NS + "route")).containsExactly("oral");
+        assertThat(options.get(OECDVariables.NS + "dose")).isEmpty();
+        assertThatThrownBy(() -> options.asMap().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void fieldsReferenceTheOptionsOfTheVersion() {
+        Resource route = dropdown("route", "oral");
+        DropdownOptions options = DropdownOptions.build(model);
+        //options are read once, a change of the model is a new ontology version
+        route.addProperty(OECDVariables.OPTION_GROUP, model.createResource(OECDVariables.NS + "iv").addProperty(RDFS.label, "intravenous"));
+
+        FieldDescriptor field = new FieldDescriptors(options).get(route);
+
+        assertThat(field.getOptions()).containsExactly("oral");
+        assertThat(field.getOtherAttributes()).isEqualTo(", \"options\": [['oral', 'oral']]");
+    }
+
+    @Test
+    void ontologySnapshotHasTheOptions() throws Exception {
+        OntologySnapshot snapshot = OntologySnapshot.parse(StreamUtils.copyToByteArray(
+                new ClassPathResource("static/ontologie.ttl").getInputStream()));
+
+        assertThat(snapshot.getDropdownOptions().asMap()).hasSize(3);
+        assertThat(snapshot.getDropdownOptions().asMap().values()).anySatisfy(o -> assertThat(o).contains("text"));
+    }
+}
@@ -0,0 +1,59 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.jupiter.api.Test;
+import vub.be.oecd.util.OECDVariables;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldDescriptorsTest {
+
+    private final Model model = ModelFactory.createDefaultModel();
+    private final FieldDescriptors fields = new FieldDescriptors();
+
+    private Resource predicate(String name, Resource range) {
+        Resource p = model.createResource(OECDVariables.NS + name).addProperty(RDFS.label, name.replace('_', ' '));
+        if (range != null)
+            p.addProperty(RDFS.range, range);
+        return p;
+    }
+
+    @Test
+    void numberFieldsGetPrecisionAndMin() {
+        FieldDescriptor field = fields.get(predicate("dose", XSD.positiveInteger));
+        assertThat(field.getType()).isEqualTo("field_number");
+        assertThat(field.getOtherAttributes()).isEqualTo(", \"precision\": 1, \"min\": 1");
+        assertThat(fields.get(predicate("weight", XSD.xdouble)).getOtherAttributes()).isEmpty();
+    }
+
+    @Test
+    void dropdownFieldsGetTheirOptions() {
+        Resource dropdown = predicate("route", model.createResource(XSD.getURI() + "dropdown"));
+        dropdown.addProperty(OECDVariables.OPTION_GROUP, model.createResource(OECDVariables.NS + "opt_1").addProperty(RDFS.label, "oral"));
+
+        FieldDescriptor field = fields.get(dropdown);
+        assertThat(field.getType()).isEqualTo("field_dropdown");
+        assertThat(field.getOptions()).containsExactly("oral");
+        assertThat(field.getOtherAttributes()).isEqualTo(", \"options\": [['oral', 'oral']]");
+    }
+
+    @Test
+    void predicatesWithoutKnownRangeAreTextInputs() {
+        FieldDescriptor field = fields.get(predicate("cell_line", null));
+        assertThat(field.getType()).isEqualTo("field_input");
+        assertThat(field.getLabel()).isEqualTo("cell line");
+        assertThat(field.getName()).isEqualTo(OECDVariables.NS + "cell_line");
+        assertThat(fields.get(predicate("names", RDFS.Literal)).getType()).isEqualTo("field_input");
+    }
+
+    @Test
+    void predicatesAreResolvedOnce() {
+        Resource p = predicate("Date", XSD.dateTime);
+        assertThat(fields.get(p)).isSameAs(fields.get(p));
+        assertThat(fields.get(p).getType()).isEqualTo("field_date");
+    }
+}
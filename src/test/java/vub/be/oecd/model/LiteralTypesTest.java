@@ -0,0 +1,55 @@
+package vub.be.oecd.model;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.jupiter.api.Test;
+import vub.be.oecd.util.OECDVariables;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiteralTypesTest {
+
+    private final Model model = ModelFactory.createDefaultModel();
+
+    private Node predicate(String name, Resource range) {
+        return model.createResource(OECDVariables.NS + name).addProperty(RDFS.range, range).asNode();
+    }
+
+    private final Node year = predicate("year", XSD.integer);
+    private final Node date = predicate("date", XSD.dateTime);
+    private final Node animal = predicate("animal", XSD.xboolean);
+    private final LiteralTypes types = LiteralTypes.build(model);
+
+    private Node type(Node predicate, String value) {
+        return types.type(predicate, NodeFactory.createLiteral(value));
+    }
+
+    @Test
+    void literalsGetTheRangeOfTheirPredicate() {
+        assertThat(type(year, "1999")).isEqualTo(NodeFactory.createLiteral("1999", XSDDatatype.XSDinteger));
+        assertThat(type(date, "2020-01-31T10:00:00")).isEqualTo(NodeFactory.createLiteral("2020-01-31T10:00:00", XSDDatatype.XSDdateTime));
+        assertThat(type(animal, "TRUE")).isEqualTo(NodeFactory.createLiteral("true", XSDDatatype.XSDboolean));
+        assertThat(type(animal, "FALSE")).isEqualTo(NodeFactory.createLiteral("false", XSDDatatype.XSDboolean));
+        assertThat(type(animal, "TRUE").getLiteralValue()).isEqualTo(true);
+        assertThat(type(NodeFactory.createURI(OECDVariables.NS + "other"), "x")).isEqualTo(NodeFactory.createLiteral("x"));
+    }
+
+    @Test
+    void invalidValuesStayStrings() {
+        assertThat(type(year, "nineteen")).isEqualTo(NodeFactory.createLiteral("nineteen"));
+        assertThat(type(year, "")).isEqualTo(NodeFactory.createLiteral(""));
+        assertThat(type(date, "yesterday")).isEqualTo(NodeFactory.createLiteral("yesterday"));
+        assertThat(type(animal, "yes")).isEqualTo(NodeFactory.createLiteral("yes"));
+    }
+
+    @Test
+    void datesFromTheDatePickerAreMidnight() {
+        assertThat(type(date, "2020-01-31")).isEqualTo(NodeFactory.createLiteral("2020-01-31T00:00:00", XSDDatatype.XSDdateTime));
+    }
+}
@@ -0,0 +1,93 @@
+package vub.be.oecd.service;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatasetExporterTest {
+
+    private static final String ONTOLOGY_GRAPH = "http://ontologies.vub.be/oecd";
+
+    @TempDir
+    Path directory;
+
+    private DossierGraphStore store;
+    private final DatasetExporter exporter = new DatasetExporter();
+
+    @BeforeEach
+    void setUp() {
+        store = TestGraphStack.openStore(directory);
+        ReflectionTestUtils.setField(exporter, "dossierGraphStore", store);
+        for (long id = 1; id <= 3; id++)
+            store.replaceGraph(id, dossier(id));
+        Model ontology = ModelFactory.createDefaultModel();
+        ontology.createResource(ONTOLOGY_GRAPH).addProperty(RDFS.label, "ontology");
+        store.replaceNamedGraph(ONTOLOGY_GRAPH, ontology.getGraph());
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static Model dossier(long id) {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource(DossierGraphStore.graphName(id))
+                .addProperty(RDFS.label, "dossier " + id)
+                .addProperty(RDFS.seeAlso, model.createResource().addProperty(RDFS.comment, "report of " + id));
+        return model;
+    }
+
+    @Test
+    void nQuadsHoldEveryNamedGraph() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long triples = exporter.export(DatasetExporter.Format.NQUADS, out);
+        assertThat(triples).isEqualTo(10);
+
+        Dataset imported = DatasetFactory.create();
+        RDFDataMgr.read(imported, new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), Lang.NQUADS);
+        for (long id = 1; id <= 3; id++)
+            assertThat(imported.getNamedModel(DossierGraphStore.graphName(id)).isIsomorphicWith(dossier(id))).isTrue();
+        assertThat(imported.getNamedModel(ONTOLOGY_GRAPH).size()).isEqualTo(1);
+    }
+
+    @Test
+    void turtleTarHasOneFilePerGraph() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(DatasetExporter.Format.TURTLE, out);
+
+        Map<String, Model> files = new HashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                Model model = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(model, new ByteArrayInputStream(StreamUtils.copyToByteArray(tar)), Lang.TURTLE);
+                files.put(entry.getName(), model);
+            }
+        }
+        assertThat(files).containsOnlyKeys("1.ttl", "2.ttl", "3.ttl", "graphs/http%3A%2F%2Fontologies.vub.be%2Foecd.ttl");
+        assertThat(files.get("2.ttl").isIsomorphicWith(dossier(2))).isTrue();
+    }
+}
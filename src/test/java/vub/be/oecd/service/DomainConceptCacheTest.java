@@ -0,0 +1,77 @@
+package vub.be.oecd.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import vub.be.oecd.model.DomainConcept;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainConceptCacheTest {
+
+    private final DomainConceptCache cache = new DomainConceptCache();
+
+    private static DomainConcept concept(long id, String name) {
+        DomainConcept concept = new DomainConcept();
+        concept.setId(id);
+        concept.setName(name);
+        concept.setType("report");
+        concept.setXML("<xml/>");
+        return concept;
+    }
+
+    @Test
+    void returnsCopies() {
+        cache.putAll(Arrays.asList(concept(1, "a"), concept(2, "b")), 0);
+
+        List<DomainConcept> all = cache.getAll(0);
+        assertThat(all).extracting(DomainConcept::getName).containsExactly("a", "b");
+        all.get(0).setName("changed");
+
+        assertThat(cache.get(1, 0).getName()).isEqualTo("a");
+        assertThat(cache.get(1, 0)).isNotSameAs(cache.get(1, 0));
+        assertThat(cache.getHits()).isEqualTo(4);
+    }
+
+    @Test
+    void newVersionDropsEverything() {
+        cache.putAll(Arrays.asList(concept(1, "a")), 3);
+
+        assertThat(cache.getAll(4)).isNull();
+        assertThat(cache.get(1, 4)).isNull();
+        assertThat(cache.size()).isZero();
+
+        //read before the last change, not cached anymore
+        cache.put(concept(1, "a"), 3);
+        assertThat(cache.get(1, 4)).isNull();
+        assertThat(cache.getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    void boundedByEntries() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.putAll(Arrays.asList(concept(1, "a"), concept(2, "b"), concept(3, "c")), 0);
+        assertThat(cache.getAll(0)).isNull();
+
+        cache.putAll(Arrays.asList(concept(1, "a"), concept(2, "b")), 0);
+        cache.get(1, 0);
+        cache.put(concept(3, "c"), 0);
+
+        //the full list is incomplete once a concept is evicted
+        assertThat(cache.getAll(0)).isNull();
+        assertThat(cache.get(1, 0)).isNotNull();
+        assertThat(cache.get(2, 0)).isNull();
+        assertThat(cache.get(3, 0)).isNotNull();
+    }
+
+    @Test
+    void clearDropsTheList() {
+        cache.putAll(Arrays.asList(concept(1, "a")), 0);
+        cache.clear();
+
+        assertThat(cache.getAll(0)).isNull();
+        assertThat(cache.getHitRatio()).isZero();
+    }
+}
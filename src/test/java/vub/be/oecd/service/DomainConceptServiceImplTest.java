@@ -0,0 +1,114 @@
+package vub.be.oecd.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
+import vub.be.oecd.model.DomainConceptTombstone;
+import vub.be.oecd.model.VersionStamp;
+import vub.be.oecd.repository.DomainConceptRepository;
+import vub.be.oecd.repository.DomainConceptTombstoneRepository;
+import vub.be.oecd.repository.VersionStampRepository;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DomainConceptServiceImplTest {
+
+    private final DomainConceptRepository domainConceptRepository = mock(DomainConceptRepository.class);
+    private final DomainConceptTombstoneRepository tombstoneRepository = mock(DomainConceptTombstoneRepository.class);
+    private final VersionStampRepository versionStampRepository = mock(VersionStampRepository.class);
+    private final DomainConceptServiceImpl service = new DomainConceptServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "domainConceptRepository", domainConceptRepository);
+        ReflectionTestUtils.setField(service, "domainConceptTombstoneRepository", tombstoneRepository);
+        ReflectionTestUtils.setField(service, "versionStampRepository", versionStampRepository);
+        ReflectionTestUtils.setField(service, "domainConceptCache", new DomainConceptCache());
+        when(versionStampRepository.findById(VersionStamp.DOMAIN_CONCEPT))
+                .thenReturn(Optional.of(new VersionStamp(VersionStamp.DOMAIN_CONCEPT, 10)));
+        when(domainConceptRepository.findAllWithXmlAndScript()).thenReturn(Arrays.asList(
+                concept(1, null, null), concept(2, 3L, 8L), concept(3, 6L, 6L), concept(4, 7L, 9L)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static DomainConcept concept(long id, Long createdVersion, Long version) {
+        DomainConcept concept = new DomainConcept();
+        concept.setId(id);
+        concept.setName("concept " + id);
+        concept.setCreatedVersion(createdVersion);
+        concept.setVersion(version);
+        return concept;
+    }
+
+    @Test
+    void changesAreSplitInAddedAndUpdated() {
+        when(tombstoneRepository.findByVersionGreaterThan(5)).thenReturn(Arrays.asList(new DomainConceptTombstone(5L, 7)));
+
+        DomainConceptChanges changes = service.getDomainConceptChanges(5L);
+
+        assertThat(changes.isFull()).isFalse();
+        assertThat(changes.getVersion()).isEqualTo(10);
+        assertThat(changes.getAdded()).extracting(DomainConcept::getId).containsExactly(3L, 4L);
+        assertThat(changes.getUpdated()).extracting(DomainConcept::getId).containsExactly(2L);
+        assertThat(changes.getDeleted()).containsExactly(5L);
+    }
+
+    @Test
+    void tombstonesAfterTheVersionOfTheListAreLeftOut() {
+        //deleted by another instance after the version stamp was read
+        when(tombstoneRepository.findByVersionGreaterThan(8)).thenReturn(Arrays.asList(
+                new DomainConceptTombstone(5L, 9), new DomainConceptTombstone(6L, 11)));
+
+        assertThat(service.getDomainConceptChanges(8L).getDeleted()).containsExactly(5L);
+        assertThat(service.getDomainConceptChanges(10L).getDeleted()).isEmpty();
+    }
+
+    @Test
+    void unknownVersionsGetTheFullList() {
+        for (Long since : Arrays.asList(null, -1L, 11L)) {
+            DomainConceptChanges changes = service.getDomainConceptChanges(since);
+            assertThat(changes.isFull()).isTrue();
+            assertThat(changes.getAdded()).extracting(DomainConcept::getId).containsExactly(1L, 2L, 3L, 4L);
+            assertThat(changes.getUpdated()).isEmpty();
+            assertThat(changes.getDeleted()).isEmpty();
+        }
+    }
+
+    @Test
+    void versionsBeforeTheKeptTombstonesGetTheFullList() {
+        ReflectionTestUtils.setField(service, "tombstoneRetention", 3L);
+
+        assertThat(service.getDomainConceptChanges(6L).isFull()).isTrue();
+        assertThat(service.getDomainConceptChanges(7L).isFull()).isFalse();
+    }
+
+    @Test
+    void deletePrunesOldTombstones() {
+        ReflectionTestUtils.setField(service, "tombstoneRetention", 3L);
+        when(versionStampRepository.findForUpdate(VersionStamp.DOMAIN_CONCEPT))
+                .thenReturn(Optional.of(new VersionStamp(VersionStamp.DOMAIN_CONCEPT, 10)));
+        when(tombstoneRepository.deleteUpToVersion(anyLong())).thenReturn(2);
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.deleteDomainConceptById(4);
+
+        verify(domainConceptRepository).deleteById(4L);
+        verify(tombstoneRepository).deleteUpToVersion(8);
+    }
+}
@@ -0,0 +1,70 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vub.be.oecd.util.GraphDelta;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DossierGraphStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private DossierGraphStore store;
+
+    @BeforeEach
+    void open() {
+        store = TestGraphStack.openStore(directory);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private Model dossier(String label) {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource(DossierGraphStore.graphName(1)).addProperty(RDFS.label, label);
+        return model;
+    }
+
+    @Test
+    void replaceGraphReplacesTheWholeGraph() {
+        store.replaceGraph(1, dossier("first"));
+        store.replaceGraph(1, dossier("second"));
+        store.replaceGraph(2, dossier("other"));
+
+        Txn.executeRead(store.getDataset(), () -> {
+            Model graph = store.getDataset().getNamedModel("http://wise10.vub.ac.be/resource/dossier/1");
+            assertThat(graph.isIsomorphicWith(dossier("second"))).isTrue();
+            assertThat(store.getDataset().getNamedModel(DossierGraphStore.graphName(2)).size()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void onlyChangesAreWritten() {
+        Model model = dossier("first");
+        model.createResource().addProperty(RDFS.comment, "report").addProperty(RDFS.label, "a");
+        assertThat(store.replaceGraph(1, model).getAdded()).hasSize(3);
+
+        Model same = dossier("first");
+        same.createResource().addProperty(RDFS.comment, "report").addProperty(RDFS.label, "a");
+        assertThat(store.replaceGraph(1, same).isEmpty()).isTrue();
+
+        Model edited = dossier("first");
+        edited.createResource().addProperty(RDFS.comment, "report").addProperty(RDFS.label, "b");
+        GraphDelta delta = store.replaceGraph(1, edited);
+        assertThat(delta.getAdded()).hasSize(1);
+        assertThat(delta.getRemoved()).hasSize(1);
+        assertThat(store.readGraph(1).isIsomorphicWith(edited)).isTrue();
+    }
+}
@@ -0,0 +1,132 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.vocabulary.DCTerms;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.ImportStatus;
+
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DossierImportJobTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private final DossierImportJob job = new DossierImportJob();
+    private final InMemoryDossiers dossiers = new InMemoryDossiers();
+    private String sample;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory).open().startMaterializer();
+        ReflectionTestUtils.setField(job, "dossierService", dossiers);
+        ReflectionTestUtils.setField(job, "rdfMaterializer", stack.materializer);
+        ReflectionTestUtils.setField(job, "graphCommitQueue", stack.commitQueue);
+        ReflectionTestUtils.setField(job, "batchSize", 20);
+        job.init();
+
+        sample = StreamUtils.copyToString(new ClassPathResource("dossier-sample.xml").getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        job.shutdown();
+        stack.close();
+    }
+
+    private ImportStatus await() throws InterruptedException {
+        return TestGraphStack.await(job::getStatus, status -> status.getState().matches("done|failed|stopped"));
+    }
+
+    private static String opinion(String name) {
+        return "<xml><block type=\"OPINION\"><field name=\"ID\">" + name + "</field>"
+                + "<field name=\"URL\">http://wise10.vub.ac.be/resource/dossier/1</field>"
+                + "<field name=\"PUBLICATION\">http://example.org/" + name + ".pdf</field></block></xml>";
+    }
+
+    @Test
+    void zipIsImportedInBatches() throws Exception {
+        Path zip = directory.resolve("dossiers.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip.toFile()))) {
+            for (int i = 0; i < 50; i++) {
+                out.putNextEntry(new ZipEntry("dossiers/" + i + ".xml"));
+                out.write(opinion("dossier " + i).getBytes(StandardCharsets.UTF_8));
+            }
+            out.putNextEntry(new ZipEntry("sample.XML"));
+            out.write(sample.getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("broken.xml"));
+            out.write("<xml><block".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("empty.xml"));
+            out.write("<xml></xml>".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("readme.txt"));
+            out.write("not a dossier".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(job.startZip(zip.toFile(), "dossiers.zip", true)).isTrue();
+        ImportStatus status = await();
+
+        assertThat(status.getState()).isEqualTo("done");
+        assertThat(status.getTotal()).isEqualTo(53);
+        assertThat(status.getProcessed()).isEqualTo(53);
+        assertThat(status.getImported()).isEqualTo(51);
+        assertThat(status.getFailed()).isEqualTo(2);
+        assertThat(status.getFailures()).containsOnlyKeys("broken.xml", "empty.xml");
+        assertThat(status.getFailures().get("empty.xml")).isEqualTo("No OPINION block");
+        assertThat(dossiers.batches).containsExactly(20, 20, 11);
+        assertThat(Files.exists(zip)).isFalse();
+
+        Dossier imported = dossiers.dossiers.values().stream()
+                .filter(d -> d.getName().equals("dossier 7")).findFirst().get();
+        assertThat(imported.getUrl()).isEqualTo("http://example.org/dossier 7.pdf");
+        //the graph uses the URL of the new dossier, not the one in the file
+        String resource = DossierGraphStore.graphName(imported.getId());
+        assertThat(imported.getXML()).contains(resource);
+        assertThat(stack.store.readGraph(imported.getId()).getResource(resource).getProperty(DCTerms.identifier).getString())
+                .isEqualTo("dossier 7");
+        assertThat(stack.textIndex.search("cell_line:hacat", 10)).isNotEmpty();
+    }
+
+    @Test
+    void directoryIsImported() throws Exception {
+        Path files = Files.createDirectories(directory.resolve("export/sub"));
+        Files.write(files.resolve("a.xml"), opinion("a").getBytes(StandardCharsets.UTF_8));
+        Files.write(files.getParent().resolve("b.xml"), "<xml><block type=\"OPINION\"></block></xml>".getBytes(StandardCharsets.UTF_8));
+
+        ReflectionTestUtils.setField(job, "root", directory.toString());
+        assertThat(job.startDirectory(job.resolveDirectory("export"))).isTrue();
+        ImportStatus status = await();
+
+        assertThat(status.getImported()).isEqualTo(2);
+        //without ID field the name of the file is used
+        assertThat(dossiers.dossiers.values()).extracting(Dossier::getName).containsExactlyInAnyOrder("a", "b");
+        assertThat(job.getFailures()).isEmpty();
+    }
+
+    @Test
+    void onlyDirectoriesBelowTheRootAreImported() throws Exception {
+        Files.createDirectories(directory.resolve("root/export"));
+        Files.createDirectories(directory.resolve("other"));
+
+        assertThat(job.resolveDirectory("export")).isNull();
+
+        ReflectionTestUtils.setField(job, "root", directory.resolve("root").toString());
+        assertThat(job.resolveDirectory("export")).isEqualTo(directory.resolve("root/export").toRealPath().toFile());
+        assertThat(job.resolveDirectory("../other")).isNull();
+        assertThat(job.resolveDirectory(directory.resolve("other").toString())).isNull();
+        assertThat(job.resolveDirectory("missing")).isNull();
+    }
+}
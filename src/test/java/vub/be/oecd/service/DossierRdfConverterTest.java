@@ -0,0 +1,103 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The StAX converter must produce the same RDF as transform.xslt
+ */
+class DossierRdfConverterTest {
+
+    private static final String URL = "<field name=\"URL\">http://wise10.vub.ac.be/resource/dossier/7</field>";
+
+    private DossierRdfConverter converter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        XmlTransformService xmlTransformService = new XmlTransformService();
+        ReflectionTestUtils.setField(xmlTransformService, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(xmlTransformService, "location", "classpath:static/transform.xslt");
+        ReflectionTestUtils.setField(xmlTransformService, "poolSize", 1);
+        xmlTransformService.init();
+        converter = new DossierRdfConverter();
+        ReflectionTestUtils.setField(converter, "xmlTransformService", xmlTransformService);
+    }
+
+    private void assertSameAsStylesheet(String xml) throws Exception {
+        Model expected = ModelFactory.createDefaultModel();
+        converter.convertWithStylesheet(xml, StreamRDFLib.graph(expected.getGraph()));
+        Model actual = converter.convert(xml);
+        assertThat(actual.isIsomorphicWith(expected))
+                .as("stax:\n%s\nxslt:\n%s", actual.getGraph(), expected.getGraph())
+                .isTrue();
+    }
+
+    @Test
+    void sampleDossier() throws Exception {
+        String xml = StreamUtils.copyToString(new ClassPathResource("dossier-sample.xml").getInputStream(), StandardCharsets.UTF_8);
+        assertSameAsStylesheet(xml);
+        assertThat(converter.convert(xml).size()).isEqualTo(27);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            //empty workspace and a dossier without reports
+            "<xml></xml>",
+            "<xml><block type=\"OPINION\">" + URL + "</block></xml>",
+            //no URL, ID or PUBLICATION
+            "<xml><block type=\"OPINION\"><statement name=\"REPORTS\"><block type=\"http://ontologies.vub.be/oecd#Human_Data\"/></statement></block></xml>",
+            //URL after the reports, duplicated fields
+            "<xml><block type=\"OPINION\"><field name=\"ID\">a</field><field name=\"ID\">b</field><statement name=\"REPORTS\">"
+                    + "<block type=\"http://ontologies.vub.be/oecd#Human_Data\"><field name=\"http://ontologies.vub.be/oecd#Year\">1999</field></block>"
+                    + "</statement>" + URL + "<field name=\"URL\">http://example.org/other</field></block></xml>",
+            //undefined values, empty fields, text split by a comment, field names that are no property
+            "<xml><block type=\"OPINION\">" + URL + "<statement name=\"REPORTS\"><block type=\"http://ontologies.vub.be/oecd#Human_Data\">"
+                    + "<field name=\"http://ontologies.vub.be/oecd#a\">undefined</field>"
+                    + "<field name=\"http://ontologies.vub.be/oecd#b\"/>"
+                    + "<field name=\"http://ontologies.vub.be/oecd#c\">first<!-- x -->second</field>"
+                    + "<field name=\"http://ontologies.vub.be/oecd#d\">x<!-- x -->undefined</field>"
+                    + "<field name=\"http://ontologies.vub.be/oecd#e\"><![CDATA[1 < 2]]> &amp; more</field>"
+                    + "</block></statement></block></xml>",
+            //reports in next elements at any depth, blocks in other inputs are no reports
+            "<xml><block type=\"OPINION\">" + URL + "<statement name=\"REPORTS\"><block type=\"http://ontologies.vub.be/oecd#A\">"
+                    + "<value name=\"v\"><block type=\"http://ontologies.vub.be/oecd#A-v\"><field name=\"http://ontologies.vub.be/oecd#x\">1</field>"
+                    + "<next><block type=\"http://ontologies.vub.be/oecd#B\"><field name=\"http://ontologies.vub.be/oecd#y\">2</field></block></next>"
+                    + "</block></value>"
+                    + "<next><block type=\"http://ontologies.vub.be/oecd#C\"><field name=\"http://ontologies.vub.be/oecd#z\">3</field></block></next>"
+                    + "</block></statement><statement name=\"OTHER\"><block type=\"http://ontologies.vub.be/oecd#D\"/></statement></block></xml>",
+            //several dossiers, an OPINION inside another block, OPINION blocks inside an OPINION are not dossiers
+            "<xml><block type=\"OPINION\">" + URL + "<value name=\"x\"><block type=\"OPINION\"><field name=\"URL\">http://example.org/nested</field></block></value></block>"
+                    + "<block type=\"other\"><statement name=\"s\"><block type=\"OPINION\"><field name=\"URL\">http://example.org/second</field></block></statement></block></xml>",
+            //elements in a namespace are not matched
+            "<xml xmlns=\"https://developers.google.com/blockly/xml\"><block type=\"OPINION\">" + URL + "</block></xml>"
+    })
+    void edgeCases(String xml) throws Exception {
+        assertSameAsStylesheet(xml);
+    }
+
+    @Test
+    void largeDossierIsStreamed() throws Exception {
+        StringBuilder xml = new StringBuilder("<xml>");
+        for (int i = 0; i < 2000; i++) {
+            xml.append("<block type=\"OPINION\"><field name=\"URL\">http://wise10.vub.ac.be/resource/dossier/").append(i)
+                    .append("</field><statement name=\"REPORTS\"><block type=\"http://ontologies.vub.be/oecd#Human_Data\">")
+                    .append("<field name=\"http://ontologies.vub.be/oecd#Year\">").append(i).append("</field></block></statement></block>");
+        }
+        xml.append("</xml>");
+        assertSameAsStylesheet(xml.toString());
+        assertThat(converter.convert(xml.toString()).size()).isEqualTo(2000 * 7);
+    }
+}
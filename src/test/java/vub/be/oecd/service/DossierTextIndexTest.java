@@ -0,0 +1,164 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StreamUtils;
+import vub.be.oecd.model.SearchHit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DossierTextIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private DossierGraphStore store;
+    private GraphCommitQueue commitQueue;
+    private DossierTextIndex textIndex;
+    private Model sample;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory).open();
+        store = stack.store;
+        commitQueue = stack.commitQueue;
+        textIndex = stack.textIndex;
+        String xml = StreamUtils.copyToString(new ClassPathResource("dossier-sample.xml").getInputStream(), StandardCharsets.UTF_8);
+        sample = new DossierRdfConverter().convert(xml);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stack.close();
+    }
+
+    @Test
+    void literalsAreSearchableOnceTheGraphIsCommitted() throws Exception {
+        commitQueue.replaceGraph(42, sample).get();
+
+        //the Acute_Toxicity report is in the next chain of Chemical_Identity, so its fields belong to both
+        List<SearchHit> hits = textIndex.search("hacat", 10);
+        assertThat(hits).extracting(SearchHit::getReport).containsExactlyInAnyOrder("Chemical_Identity", "Acute_Toxicity");
+        assertThat(hits.get(0).getDossierId()).isEqualTo(42);
+        assertThat(hits.get(0).getPredicate()).isEqualTo("cell_line");
+        assertThat(hits.get(0).getValue()).isEqualTo("HaCaT & \"quoted\" <x>");
+
+        assertThat(textIndex.search("identifier:\"test dossier\"", 10))
+                .extracting(SearchHit::getReport).containsExactly("Opinion");
+    }
+
+    @Test
+    void queriesCanBeScopedToPredicateReportAndDossier() throws Exception {
+        commitQueue.replaceGraph(42, sample).get();
+
+        assertThat(textIndex.search("cell_line:hacat AND report:Acute_Toxicity", 10)).hasSize(1);
+        assertThat(textIndex.search("Chemical_names:hacat", 10)).isEmpty();
+        assertThat(textIndex.search("Chemical_names:2-methylresorcinol", 10)).hasSize(1);
+        assertThat(textIndex.search("report:Acute_Toxicity AND Year:2008", 10))
+                .extracting(SearchHit::getPredicate).containsExactly("Year");
+        assertThat(textIndex.search("predicate:CAS_number", 10))
+                .extracting(SearchHit::getValue).containsExactly("608-25-3");
+        assertThat(textIndex.search("dossier:42 AND report:Mutagenicity AND 12.5", 10)).hasSize(1);
+        assertThat(textIndex.search("dossier:43 AND 12.5", 10)).isEmpty();
+    }
+
+    @Test
+    void newGraphReplacesTheDocumentsOfTheDossier() throws Exception {
+        commitQueue.replaceGraph(42, sample).get();
+        commitQueue.replaceGraph(7, sample).get();
+        assertThat(textIndex.search("hacat AND report:Acute_Toxicity", 10)).hasSize(2);
+
+        Model edited = sample.difference(sample.listStatements(null, null, "HaCaT & \"quoted\" <x>").toModel());
+        commitQueue.replaceGraph(42, edited).get();
+
+        assertThat(textIndex.search("hacat", 10)).extracting(SearchHit::getDossierId).containsOnly(7L);
+        assertThat(textIndex.search("Chemical_names:2-methylresorcinol", 10)).hasSize(2);
+    }
+
+    @Test
+    void removedGraphTakesItsDocumentsAlong() throws Exception {
+        commitQueue.replaceGraph(42, sample).get();
+        commitQueue.replaceGraph(7, sample).get();
+
+        assertThat(commitQueue.removeGraph(42).get().getRemoved()).hasSize((int) sample.size());
+
+        assertThat(store.readGraph(42).isEmpty()).isTrue();
+        assertThat(textIndex.search("hacat", 10)).extracting(SearchHit::getDossierId).containsOnly(7L);
+    }
+
+    @Test
+    void emptyIndexIsRebuiltFromTheDataset() throws Exception {
+        store.replaceGraph(42, sample);
+        store.replaceGraph(7, sample);
+        stack.closeIndex();
+        FileSystemUtils.deleteRecursively(stack.getIndexLocation());
+
+        textIndex = stack.openIndex(new DossierTextIndex());
+        assertThat(textIndex.search("predicate:CAS_number", 10)).extracting(SearchHit::getDossierId)
+                .containsExactlyInAnyOrder(42L, 7L);
+        assertThat(textIndex.size()).isEqualTo(2 * textIndex.search("dossier:7", 100).size());
+    }
+
+    @Test
+    void savesAreNotHeldUpByARebuild() throws Exception {
+        commitQueue.replaceGraph(42, sample).get();
+        CountDownLatch indexing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stack.closeIndex();
+        textIndex = stack.openIndex(new DossierTextIndex() {
+            @Override
+            void indexGraph(IndexWriter target, long dossierId, Graph graph) throws IOException {
+                indexing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.indexGraph(target, dossierId, graph);
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> rebuild = executor.submit(() -> textIndex.rebuild());
+            assertThat(indexing.await(10, TimeUnit.SECONDS)).isTrue();
+
+            //committed after the snapshot the rebuild indexes
+            commitQueue.replaceGraph(7, sample).get(10, TimeUnit.SECONDS);
+            commitQueue.removeGraph(42).get(10, TimeUnit.SECONDS);
+            assertThat(rebuild.isDone()).isFalse();
+            assertThat(textIndex.search("predicate:CAS_number", 10)).extracting(SearchHit::getDossierId).containsExactly(7L);
+
+            release.countDown();
+            assertThat(rebuild.get(10, TimeUnit.SECONDS)).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertThat(textIndex.search("predicate:CAS_number", 10)).extracting(SearchHit::getDossierId).containsExactly(7L);
+    }
+
+    @Test
+    void invalidQuery() {
+        assertThatThrownBy(() -> textIndex.search("cell_line:(hacat", 10)).isInstanceOf(ParseException.class);
+    }
+}
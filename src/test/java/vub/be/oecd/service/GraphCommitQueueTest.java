@@ -0,0 +1,79 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import vub.be.oecd.util.GraphDelta;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphCommitQueueTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private DossierGraphStore store;
+    private GraphCommitQueue commitQueue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory);
+        ReflectionTestUtils.setField(stack.commitQueue, "batchWaitMillis", 20L);
+        stack.open();
+        store = stack.store;
+        commitQueue = stack.commitQueue;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stack.close();
+    }
+
+    private static Model dossier(long id, String label) {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource(DossierGraphStore.graphName(id)).addProperty(RDFS.label, label);
+        return model;
+    }
+
+    @Test
+    void burstOfSavesIsCommittedInFewBatches() throws Exception {
+        ExecutorService savers = Executors.newFixedThreadPool(8);
+        List<Future<CompletableFuture<GraphDelta>>> saves = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long id = i;
+            saves.add(savers.submit(() -> commitQueue.replaceGraph(id, dossier(id, "dossier " + id))));
+        }
+        for (Future<CompletableFuture<GraphDelta>> save : saves)
+            save.get().get(30, TimeUnit.SECONDS);
+        savers.shutdown();
+
+        assertThat(commitQueue.getWrites()).isEqualTo(200);
+        assertThat(commitQueue.getBatches()).isLessThan(200);
+        assertThat(store.readGraph(123).isIsomorphicWith(dossier(123, "dossier 123"))).isTrue();
+    }
+
+    @Test
+    void writesOfTheSameDossierStayInOrder() throws Exception {
+        CompletableFuture<GraphDelta> last = null;
+        for (int i = 0; i < 20; i++)
+            last = commitQueue.replaceGraph(1, dossier(1, "version " + i));
+        last.get(30, TimeUnit.SECONDS);
+
+        assertThat(store.readGraph(1).isIsomorphicWith(dossier(1, "version 19"))).isTrue();
+    }
+}
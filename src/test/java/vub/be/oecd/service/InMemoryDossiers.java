@@ -0,0 +1,48 @@
+package vub.be.oecd.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.DossierSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Dossier table for tests. Imports get ids like the table generator hands them out, and
+ * getDossiersAfter fails once when asked for the dossiers after failAfter.
+ */
+class InMemoryDossiers implements DossierService {
+
+    final TreeMap<Long, Dossier> dossiers = new TreeMap<>();
+    //sizes of the imported batches
+    final List<Integer> batches = new ArrayList<>();
+    long nextId = 100;
+    long failAfter = -1;
+
+    public Iterable<Dossier> getAllDossiers() { return dossiers.values(); }
+    public void saveDossier(Dossier dossier) { dossiers.put(dossier.getId(), dossier); }
+    public Dossier getDossierById(long id) { return dossiers.get(id); }
+    public void deleteDossierById(long id) { dossiers.remove(id); }
+    public long countDossiers() { return dossiers.size(); }
+    public Page<DossierSummary> getDossierSummaries(String name, Pageable pageable) { return Page.empty(); }
+
+    public void importDossiers(List<Dossier> imported) {
+        batches.add(imported.size());
+        for (Dossier dossier : imported) {
+            dossier.setId(nextId++);
+            dossier.setXML(DossierRdfConverter.withDossierUrl(dossier.getXML(), dossier.getId()));
+            saveDossier(dossier);
+        }
+    }
+
+    public List<Dossier> getDossiersAfter(long id, int count) {
+        if (id == failAfter) {
+            failAfter = -1;
+            throw new IllegalStateException("connection lost");
+        }
+        List<Dossier> page = new ArrayList<>(dossiers.tailMap(id, false).values());
+        return page.subList(0, Math.min(count, page.size()));
+    }
+}
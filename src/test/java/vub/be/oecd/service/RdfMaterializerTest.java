@@ -0,0 +1,157 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xml.sax.SAXException;
+import vub.be.oecd.model.RdfStatus;
+import vub.be.oecd.util.GraphDelta;
+
+import javax.xml.transform.TransformerException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RdfMaterializerTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private DossierGraphStore store;
+    private RdfMaterializer materializer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory).open();
+        ReflectionTestUtils.setField(stack.materializer, "threads", 1);
+        stack.startMaterializer();
+        store = stack.store;
+        materializer = stack.materializer;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stack.close();
+    }
+
+    private static String xml(long id, String name) {
+        return "<xml><block type=\"OPINION\"><field name=\"ID\">" + name + "</field>"
+                + "<field name=\"URL\">http://wise10.vub.ac.be/resource/dossier/" + id + "</field></block></xml>";
+    }
+
+    private RdfStatus await(long id) throws InterruptedException {
+        return TestGraphStack.await(() -> materializer.getStatus(id), status -> !status.isPending());
+    }
+
+    @Test
+    void onlyTheLatestSaveEndsUpInTheGraph() throws Exception {
+        for (int i = 0; i < 50; i++)
+            materializer.submit(1, xml(1, "save " + i));
+        materializer.submit(2, xml(2, "other"));
+
+        RdfStatus status = await(1);
+        assertThat(status.getState()).isEqualTo("done");
+        assertThat(status.getTriples()).isEqualTo(3);
+        assertThat(status.getConversionMillis()).isNotNull();
+        assertThat(await(2).getState()).isEqualTo("done");
+
+        Model expected = materializer.convert(xml(1, "save 49"));
+        assertThat(store.readGraph(1).isIsomorphicWith(expected)).isTrue();
+    }
+
+    @Test
+    void invalidXmlFailsWithoutTouchingTheGraph() throws Exception {
+        materializer.submit(3, xml(3, "good"));
+        await(3);
+        materializer.submit(3, "<xml><block");
+
+        RdfStatus status = await(3);
+        assertThat(status.getState()).isEqualTo("failed");
+        assertThat(status.getError()).isNotEmpty();
+        assertThat(store.readGraph(3).size()).isEqualTo(3);
+    }
+
+    @Test
+    void saveDuringARewriteIsWrittenAfterIt() throws Exception {
+        //the user saves while the job converts the XML it read before
+        ReflectionTestUtils.setField(materializer, "dossierRdfConverter", new DossierRdfConverter() {
+            @Override
+            public void convert(String xml, StreamRDF sink) throws TransformerException, SAXException {
+                if (xml.contains("job"))
+                    materializer.submit(4, xml(4, "user"));
+                super.convert(xml, sink);
+            }
+        });
+
+        CompletableFuture<GraphDelta> write = materializer.rewrite(4, xml(4, "job"), 0);
+        assertThat(write).isNotNull();
+        write.join();
+
+        assertThat(await(4).getState()).isEqualTo("done");
+        assertThat(store.readGraph(4).isIsomorphicWith(materializer.convert(xml(4, "user")))).isTrue();
+    }
+
+    @Test
+    void rewriteIsSkippedAfterASave() throws Exception {
+        long runStart = System.currentTimeMillis();
+        materializer.submit(5, xml(5, "user"));
+        await(5);
+
+        assertThat(materializer.rewrite(5, xml(5, "job"), runStart)).isNull();
+        assertThat(materializer.rewrite(6, xml(6, "job"), runStart).join().getAdded()).isNotEmpty();
+    }
+
+    @Test
+    void idleDossiersAreForgottenButKeepTheirStatus() throws Exception {
+        materializer.submit(7, xml(7, "first"));
+        materializer.submit(8, xml(8, "other"));
+        await(7);
+        await(8);
+        Map<?, ?> entries = (Map<?, ?>) ReflectionTestUtils.getField(materializer, "entries");
+        for (int i = 0; i < 500 && !entries.isEmpty(); i++)
+            Thread.sleep(10);
+        assertThat(entries).isEmpty();
+        assertThat(materializer.getStatus(7).getState()).isEqualTo("done");
+
+        materializer.submit(7, xml(7, "second"));
+        assertThat(await(7).getState()).isEqualTo("done");
+        assertThat(store.readGraph(7).isIsomorphicWith(materializer.convert(xml(7, "second")))).isTrue();
+    }
+
+    @Test
+    void onlyTheLastStatusesAreKept() throws Exception {
+        ReflectionTestUtils.setField(materializer, "maxStatuses", 2);
+        materializer.submit(9, xml(9, "a"));
+        materializer.submit(10, xml(10, "b"));
+        materializer.submit(11, xml(11, "c"));
+
+        assertThat(materializer.getStatus(9)).isNull();
+        assertThat(await(10).getState()).isEqualTo("done");
+        assertThat(await(11).getState()).isEqualTo("done");
+    }
+
+    @Test
+    void deleteRemovesTheGraphAfterTheSaves() throws Exception {
+        materializer.submit(12, xml(12, "first"));
+        materializer.submit(12, xml(12, "second"));
+        materializer.delete(12);
+
+        RdfStatus status = await(12);
+        assertThat(status.getState()).isEqualTo("done");
+        assertThat(status.getTriples()).isEqualTo(0);
+        assertThat(store.readGraph(12).isEmpty()).isTrue();
+        assertThat(stack.textIndex.search("dossier:12", 10)).isEmpty();
+    }
+
+    @Test
+    void unknownDossierHasNoStatus() {
+        assertThat(materializer.getStatus(99)).isNull();
+    }
+}
@@ -0,0 +1,84 @@
+package vub.be.oecd.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import vub.be.oecd.model.Dossier;
+import vub.be.oecd.model.RematerializationStatus;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RematerializationJobTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private final RematerializationJob job = new RematerializationJob();
+    private final InMemoryDossiers dossiers = new InMemoryDossiers();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory).open().startMaterializer();
+        ReflectionTestUtils.setField(job, "dossierService", dossiers);
+        ReflectionTestUtils.setField(job, "rdfMaterializer", stack.materializer);
+        ReflectionTestUtils.setField(job, "pageSize", 100);
+        job.init();
+
+        for (long id = 1; id <= 1000; id++) {
+            Dossier dossier = new Dossier();
+            dossier.setId(id);
+            dossier.setXML("<xml><block type=\"OPINION\"><field name=\"ID\">" + id + "</field>"
+                    + "<field name=\"URL\">http://wise10.vub.ac.be/resource/dossier/" + id + "</field></block></xml>");
+            dossiers.saveDossier(dossier);
+        }
+        dossiers.getDossierById(7).setXML("<xml><block");
+        dossiers.getDossierById(8).setXML(null);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        job.shutdown();
+        stack.close();
+    }
+
+    private RematerializationStatus await() throws InterruptedException {
+        return TestGraphStack.await(job::getStatus, status -> status.getState().matches("done|failed|stopped"));
+    }
+
+    @Test
+    void rebuildsEveryGraph() throws Exception {
+        assertThat(job.start(0)).isTrue();
+        RematerializationStatus status = await();
+
+        assertThat(status.getState()).isEqualTo("done");
+        assertThat(status.getProcessed()).isEqualTo(1000);
+        assertThat(status.getWritten()).isEqualTo(998);
+        assertThat(status.getSkipped()).isEqualTo(1);
+        assertThat(status.getFailed()).isEqualTo(1);
+        assertThat(status.getFailures()).containsOnlyKeys(7L);
+        assertThat(status.getCheckpoint()).isEqualTo(1000);
+        assertThat(stack.commitQueue.getBatches()).isLessThan(998);
+        assertThat(stack.store.readGraph(999).size()).isEqualTo(3);
+    }
+
+    @Test
+    void failedRunResumesAfterItsCheckpoint() throws Exception {
+        dossiers.failAfter = 500;
+        job.start(0);
+        RematerializationStatus status = await();
+        assertThat(status.getState()).isEqualTo("failed");
+        assertThat(status.getCheckpoint()).isEqualTo(500);
+        assertThat(stack.store.readGraph(501).isEmpty()).isTrue();
+
+        assertThat(job.resume()).isTrue();
+        status = await();
+        assertThat(status.getState()).isEqualTo("done");
+        assertThat(status.getProcessed()).isEqualTo(1000);
+        assertThat(stack.store.readGraph(501).size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,50 @@
+package vub.be.oecd.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SparqlResultCacheTest {
+
+    private final SparqlResultCache cache = new SparqlResultCache();
+
+    @Test
+    void leastRecentlyUsedIsEvictedOnCount() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.put("a", 0, new byte[1]);
+        cache.put("b", 0, new byte[1]);
+        cache.get("a", 0);
+        cache.put("c", 0, new byte[1]);
+
+        assertThat(cache.get("a", 0)).isNotNull();
+        assertThat(cache.get("b", 0)).isNull();
+        assertThat(cache.get("c", 0)).isNotNull();
+    }
+
+    @Test
+    void evictedOnSize() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 100L);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 60);
+        cache.put("a", 0, new byte[50]);
+        cache.put("b", 0, new byte[40]);
+        cache.put("c", 0, new byte[30]);
+        cache.put("too large", 0, new byte[61]);
+
+        assertThat(cache.get("a", 0)).isNull();
+        assertThat(cache.getBytes()).isEqualTo(70);
+        assertThat(cache.get("too large", 0)).isNull();
+    }
+
+    @Test
+    void newGenerationDropsEverything() {
+        cache.put("a", 3, new byte[1]);
+        assertThat(cache.get("a", 3)).isNotNull();
+        assertThat(cache.get("a", 4)).isNull();
+        assertThat(cache.size()).isZero();
+
+        //computed before the last commit, not cached anymore
+        cache.put("b", 3, new byte[1]);
+        assertThat(cache.get("b", 4)).isNull();
+    }
+}
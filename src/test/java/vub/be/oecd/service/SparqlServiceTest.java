@@ -0,0 +1,172 @@
+package vub.be.oecd.service;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SparqlServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private TestGraphStack stack;
+    private DossierGraphStore store;
+    private final SparqlService sparqlService = new SparqlService();
+    private final SparqlResultCache cache = new SparqlResultCache();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stack = new TestGraphStack(directory).open();
+        store = stack.store;
+        ReflectionTestUtils.setField(sparqlService, "dossierGraphStore", store);
+        ReflectionTestUtils.setField(sparqlService, "graphCommitQueue", stack.commitQueue);
+        ReflectionTestUtils.setField(sparqlService, "sparqlResultCache", cache);
+    }
+
+    /**
+     * Starts the service on the given ontology and saves dossier 5, after the ontology in the commit queue
+     */
+    private void init(OntologyRegistry ontologyRegistry) throws Exception {
+        ReflectionTestUtils.setField(sparqlService, "ontologyRegistry", ontologyRegistry);
+        sparqlService.init();
+
+        Model dossier = ModelFactory.createDefaultModel();
+        dossier.createResource(DossierGraphStore.graphName(5)).addProperty(RDFS.label, "dossier, five");
+        stack.commitQueue.replaceGraph(5, dossier).get();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stack.close();
+    }
+
+    private String run(String query, SparqlService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sparqlService.execute(sparqlService.parse(query), format, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void selectOverTheUnionOfTheDossierGraphs() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        String query = "SELECT ?label WHERE { ?s <" + RDFS.label + "> ?label FILTER(?label = \"dossier, five\") }";
+        assertThat(run(query, SparqlService.Format.JSON)).contains("\"value\": \"dossier, five\"");
+        assertThat(run(query, SparqlService.Format.CSV)).isEqualTo("label\r\n\"dossier, five\"\r\n");
+    }
+
+    @Test
+    void ontologyIsItsOwnNamedGraph() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        String query = "ASK { GRAPH <http://ontologies.vub.be/oecd> { ?report <" + RDFS.subClassOf + "> <http://ontologies.vub.be/oecd#Report> } }";
+        assertThat(run(query, SparqlService.Format.JSON)).contains("true");
+    }
+
+    @Test
+    void reloadedOntologyIsWrittenByTheCommitQueue() throws Exception {
+        Path file = directory.resolve("ontologie.ttl");
+        try (InputStream in = new ClassPathResource("static/ontologie.ttl").getInputStream()) {
+            Files.copy(in, file);
+        }
+        OntologyRegistry ontologyRegistry = new OntologyRegistry();
+        ReflectionTestUtils.setField(ontologyRegistry, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(ontologyRegistry, "location", file.toUri().toString());
+        ontologyRegistry.init();
+        init(ontologyRegistry);
+        long writes = stack.commitQueue.getWrites();
+
+        String query = "ASK { GRAPH <http://ontologies.vub.be/oecd> { <http://ontologies.vub.be/oecd#Extra> <" + RDFS.subClassOf + "> <http://ontologies.vub.be/oecd#Report> } }";
+        assertThat(run(query, SparqlService.Format.JSON)).contains("false");
+        //queries do not write
+        assertThat(stack.commitQueue.getWrites()).isEqualTo(writes);
+
+        Files.write(file, ("\n<http://ontologies.vub.be/oecd#Extra> <" + RDFS.subClassOf + "> <http://ontologies.vub.be/oecd#Report> .\n")
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        ontologyRegistry.reload();
+        //the writes are committed in order
+        stack.commitQueue.replaceGraph(6, ModelFactory.createDefaultModel()).get();
+
+        assertThat(stack.commitQueue.getWrites()).isEqualTo(writes + 2);
+        assertThat(run(query, SparqlService.Format.JSON)).contains("true");
+    }
+
+    @Test
+    void constructAsNTriples() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        String query = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + DossierGraphStore.graphName(5) + "> { ?s ?p ?o } }";
+        assertThat(run(query, SparqlService.Format.NTRIPLES))
+                .isEqualTo("<http://wise10.vub.ac.be/resource/dossier/5> <" + RDFS.label + "> \"dossier, five\" .\n");
+    }
+
+    @Test
+    void formatsPerQueryType() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        assertThat(sparqlService.format(sparqlService.parse("SELECT * {}"), null)).isEqualTo(SparqlService.Format.JSON);
+        assertThat(sparqlService.format(sparqlService.parse("SELECT * {}"), SparqlService.Format.NTRIPLES)).isNull();
+        assertThat(sparqlService.format(sparqlService.parse("DESCRIBE <x:y>"), null)).isEqualTo(SparqlService.Format.NTRIPLES);
+        assertThatThrownBy(() -> sparqlService.parse("SELECT WHERE")).isInstanceOf(QueryParseException.class);
+        assertThatThrownBy(() -> sparqlService.parse("DROP ALL")).isInstanceOf(QueryParseException.class);
+    }
+
+    @Test
+    void slowQueriesAreCancelled() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        ReflectionTestUtils.setField(sparqlService, "timeoutMillis", 100L);
+        assertThatThrownBy(() -> run("SELECT (COUNT(*) AS ?n) { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i }", SparqlService.Format.JSON))
+                .isInstanceOf(QueryCancelledException.class);
+    }
+
+    @Test
+    void concurrentQueriesAreCapped() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        for (int i = 0; i < 4; i++)
+            assertThat(sparqlService.tryAcquire()).isTrue();
+        assertThat(sparqlService.tryAcquire()).isFalse();
+        sparqlService.release();
+        assertThat(sparqlService.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void repeatedQueriesComeFromTheCacheUntilAGraphChanges() throws Exception {
+        init(TestGraphStack.ontologyRegistry());
+        String query = "SELECT ?label WHERE { GRAPH <" + DossierGraphStore.graphName(5) + "> { ?s ?p ?label } }";
+        assertThat(run(query, SparqlService.Format.CSV)).contains("dossier, five");
+        //same query, other layout
+        assertThat(run(query.replace(" WHERE ", "\n  WHERE\n"), SparqlService.Format.CSV)).contains("dossier, five");
+        assertThat(cache.getHits()).isEqualTo(1);
+
+        //saving the same graph again changes nothing, the cache stays valid
+        Model same = ModelFactory.createDefaultModel();
+        same.createResource(DossierGraphStore.graphName(5)).addProperty(RDFS.label, "dossier, five");
+        store.replaceGraph(5, same);
+        run(query, SparqlService.Format.CSV);
+        assertThat(cache.getHits()).isEqualTo(2);
+
+        Model edited = ModelFactory.createDefaultModel();
+        edited.createResource(DossierGraphStore.graphName(5)).addProperty(RDFS.label, "dossier six");
+        store.replaceGraph(5, edited);
+        assertThat(run(query, SparqlService.Format.CSV)).contains("dossier six");
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(run(query, SparqlService.Format.JSON)).contains("dossier six");
+        assertThat(cache.getMisses()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,123 @@
+package vub.be.oecd.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import vub.be.oecd.model.DomainConcept;
+import vub.be.oecd.model.DomainConceptChanges;
+import vub.be.oecd.model.DomainConceptSummary;
+import vub.be.oecd.model.Suggestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SuggestServiceTest {
+
+    private final SuggestService suggestService = new SuggestService();
+    private final InMemoryDomainConcepts domainConcepts = new InMemoryDomainConcepts();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(suggestService, "ontologyRegistry", TestGraphStack.ontologyRegistry());
+        ReflectionTestUtils.setField(suggestService, "domainConceptService", domainConcepts);
+    }
+
+    @Test
+    void findsOntologyLabels() {
+        List<Suggestion> suggestions = suggestService.suggest("cell li", 10);
+
+        assertThat(suggestions).extracting(Suggestion::getValue).contains("http://ontologies.vub.be/oecd#cell_line");
+        assertThat(suggestions.get(0).getLabel()).isEqualTo("cell line");
+        assertThat(suggestService.suggest("flow", 10)).extracting(Suggestion::getKind).contains(Suggestion.LABEL);
+    }
+
+    @Test
+    void domainConceptsAreUpdatedWhenTheyChange() {
+        assertThat(suggestService.suggest("hepatocyte", 10)).isEmpty();
+
+        DomainConcept domainConcept = new DomainConcept();
+        domainConcept.setName("Hepatocyte_assay");
+        domainConcepts.saveDomainConcept(domainConcept);
+
+        assertThat(suggestService.suggest("hepatocyte", 10)).extracting(Suggestion::getKind, Suggestion::getValue)
+                .containsExactly(tuple(Suggestion.DOMAIN_CONCEPT, "Hepatocyte_assay"));
+    }
+
+    @Test
+    void composedOfNamesAreBlocksThenDomainConcepts() {
+        DomainConcept domainConcept = new DomainConcept();
+        domainConcept.setName("Hepatocyte_assay");
+        domainConcepts.saveDomainConcept(domainConcept);
+
+        List<String> names = suggestService.getComposedOfNames();
+        assertThat(names).contains("ACUTE_TOXICITY", "Acute Toxicity In Vivo").endsWith("Hepatocyte_assay").doesNotHaveDuplicates();
+    }
+
+    @Test
+    void limitIsCapped() {
+        ReflectionTestUtils.setField(suggestService, "maxResults", 3);
+
+        assertThat(suggestService.suggest("a", 100)).hasSize(3);
+    }
+
+    private static class InMemoryDomainConcepts implements DomainConceptService {
+        private final List<DomainConcept> concepts = new ArrayList<DomainConcept>();
+        private long version;
+
+        @Override
+        public Iterable<DomainConcept> getAllDomainConcepts() {
+            //loads the XML and script of every concept, the suggestions only need the names
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void saveDomainConcept(DomainConcept domainConcept) {
+            concepts.add(domainConcept);
+            version++;
+        }
+
+        @Override
+        public DomainConcept getDomainConceptById(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteDomainConceptById(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Page<DomainConceptSummary> getDomainConceptSummaries(String name, Pageable pageable) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DomainConceptSummary> getAllDomainConceptSummaries() {
+            List<DomainConceptSummary> summaries = new ArrayList<DomainConceptSummary>();
+            for (DomainConcept concept : concepts) {
+                summaries.add(new DomainConceptSummary() {
+                    public Long getId() { return concept.getId(); }
+                    public String getName() { return concept.getName(); }
+                    public String getUrl() { return concept.getUrl(); }
+                    public String getType() { return concept.getType(); }
+                });
+            }
+            return summaries;
+        }
+
+        @Override
+        public DomainConceptChanges getDomainConceptChanges(Long since) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getDomainConceptVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package vub.be.oecd.service;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The RDF side of the application for tests, wired like Spring does: TDB2 store and Lucene index in a (temporary)
+ * directory, the commit queue writing to them and, after startMaterializer, the RdfMaterializer on the
+ * ontology of the classpath. Fields can be set on the parts before open and startMaterializer.
+ */
+class TestGraphStack {
+
+    final DossierGraphStore store = new DossierGraphStore();
+    final GraphCommitQueue commitQueue = new GraphCommitQueue();
+    final RdfMaterializer materializer = new RdfMaterializer();
+    DossierTextIndex textIndex = new DossierTextIndex();
+
+    private final Path directory;
+    private boolean materializerStarted;
+
+    TestGraphStack(Path directory) {
+        this.directory = directory;
+        ReflectionTestUtils.setField(store, "location", directory.resolve("tdb2").toString());
+        ReflectionTestUtils.setField(commitQueue, "dossierGraphStore", store);
+        ReflectionTestUtils.setField(materializer, "dossierRdfConverter", new DossierRdfConverter());
+        ReflectionTestUtils.setField(materializer, "graphCommitQueue", commitQueue);
+    }
+
+    /**
+     * Opens the store and the index and starts the commit queue
+     */
+    TestGraphStack open() throws Exception {
+        store.open();
+        openIndex(textIndex);
+        commitQueue.start();
+        return this;
+    }
+
+    TestGraphStack startMaterializer() throws Exception {
+        ReflectionTestUtils.setField(materializer, "ontologyRegistry", ontologyRegistry());
+        materializer.init();
+        materializerStarted = true;
+        return this;
+    }
+
+    void closeIndex() throws Exception {
+        textIndex.close();
+    }
+
+    /**
+     * Opens the given index on the location of the closed one, the commit queue writes to it from now on
+     */
+    DossierTextIndex openIndex(DossierTextIndex index) throws Exception {
+        textIndex = index;
+        ReflectionTestUtils.setField(index, "dossierGraphStore", store);
+        ReflectionTestUtils.setField(index, "location", getIndexLocation().toString());
+        ReflectionTestUtils.setField(commitQueue, "dossierTextIndex", index);
+        index.open();
+        return index;
+    }
+
+    Path getIndexLocation() {
+        return directory.resolve("lucene");
+    }
+
+    void close() throws Exception {
+        if (materializerStarted)
+            materializer.shutdown();
+        commitQueue.stop();
+        textIndex.close();
+        store.close();
+    }
+
+    /**
+     * @return a store on the tdb2 directory below the given one, open
+     */
+    static DossierGraphStore openStore(Path directory) {
+        DossierGraphStore store = new DossierGraphStore();
+        ReflectionTestUtils.setField(store, "location", directory.resolve("tdb2").toString());
+        store.open();
+        return store;
+    }
+
+    /**
+     * @return registry of static/ontologie.ttl, initialized
+     */
+    static OntologyRegistry ontologyRegistry() throws Exception {
+        OntologyRegistry ontologyRegistry = new OntologyRegistry();
+        ReflectionTestUtils.setField(ontologyRegistry, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(ontologyRegistry, "location", "classpath:static/ontologie.ttl");
+        ontologyRegistry.init();
+        return ontologyRegistry;
+    }
+
+    /**
+     * Polls the status of background work for at most 30 seconds
+     * @return the last status, finished unless the time ran out
+     */
+    static <T> T await(Supplier<T> status, Predicate<T> finished) throws InterruptedException {
+        for (int i = 0; i < 3000 && !finished.test(status.get()); i++)
+            Thread.sleep(10);
+        return status.get();
+    }
+}
@@ -0,0 +1,74 @@
+package vub.be.oecd.util;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphDeltaTest {
+
+    private String xml;
+    private Graph stored;
+
+    private static Graph convert(String xml) throws Exception {
+        Graph graph = GraphFactory.createDefaultGraph();
+        BlocklyRdfReader.convert(new StringReader(xml), "http://wise10.vub.ac.be/resource/dossier/", StreamRDFLib.graph(graph));
+        return graph;
+    }
+
+    private GraphDelta update(Graph updated) {
+        GraphDelta delta = GraphDelta.between(stored, updated);
+        delta.applyTo(stored);
+        assertThat(stored.isIsomorphicWith(updated)).isTrue();
+        return delta;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        xml = StreamUtils.copyToString(new ClassPathResource("dossier-sample.xml").getInputStream(), StandardCharsets.UTF_8);
+        stored = convert(xml);
+    }
+
+    @Test
+    void sameDossierWritesNothing() throws Exception {
+        assertThat(update(convert(xml)).isEmpty()).isTrue();
+    }
+
+    @Test
+    void editedFieldOnlyChangesItsTriples() throws Exception {
+        //the field of the last report also belongs to the two reports above it
+        GraphDelta delta = update(convert(xml.replace(">12.5<", ">13<")));
+        assertThat(delta.getAdded()).hasSize(3);
+        assertThat(delta.getRemoved()).hasSize(3);
+        for (Triple t : delta.getAdded())
+            assertThat(t.getObject().getLiteralLexicalForm()).isEqualTo("13");
+    }
+
+    @Test
+    void newReportOnlyAddsItsTriples() throws Exception {
+        String extra = "<next><block type=\"http://ontologies.vub.be/oecd#Irritation\">"
+                + "<field name=\"http://ontologies.vub.be/oecd#Year\">2010</field></block></next>";
+        GraphDelta delta = update(convert(xml.replace("<field name=\"http://ontologies.vub.be/oecd#NOAEL_mg_kg_b\">12.5</field>",
+                "<field name=\"http://ontologies.vub.be/oecd#NOAEL_mg_kg_b\">12.5</field>" + extra)));
+        //type Report, type Irritation, contains, Year for the new report and Year for the three reports above it
+        assertThat(delta.getAdded()).hasSize(7);
+        assertThat(delta.getRemoved()).isEmpty();
+    }
+
+    @Test
+    void removedDossierRemovesEverything() {
+        GraphDelta delta = update(ModelFactory.createDefaultModel().getGraph());
+        assertThat(delta.getRemoved()).hasSize(27);
+        assertThat(delta.getAdded()).isEmpty();
+    }
+}
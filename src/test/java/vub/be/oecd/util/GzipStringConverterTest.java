@@ -0,0 +1,47 @@
+package vub.be.oecd.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GzipStringConverterTest {
+
+    private final GzipStringConverter converter = new GzipStringConverter();
+
+    @Test
+    void roundTripCompressesTheSampleDossier() throws Exception {
+        String xml = StreamUtils.copyToString(new ClassPathResource("dossier-sample.xml").getInputStream(), StandardCharsets.UTF_8);
+
+        byte[] column = converter.convertToDatabaseColumn(xml);
+
+        assertThat(GzipStringConverter.isCompressed(column)).isTrue();
+        assertThat(column.length).isLessThan(xml.getBytes(StandardCharsets.UTF_8).length / 2);
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo(xml);
+    }
+
+    @Test
+    void keepsNonAsciiText() {
+        String value = "<field name=\"NAME\">Ätzwirkung – 2,4-D µg/L</field>";
+
+        assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(value))).isEqualTo(value);
+    }
+
+    @Test
+    void readsUncompressedRowsAsText() {
+        byte[] legacy = "<xml><block type=\"OPINION\"></block></xml>".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(GzipStringConverter.isCompressed(legacy)).isFalse();
+        assertThat(converter.convertToEntityAttribute(legacy)).isEqualTo("<xml><block type=\"OPINION\"></block></xml>");
+        assertThat(converter.convertToEntityAttribute(new byte[0])).isEmpty();
+    }
+
+    @Test
+    void keepsNull() {
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+}
@@ -0,0 +1,55 @@
+package vub.be.oecd.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    private PrefixIndex<String> index(String... labels) {
+        PrefixIndex<String> index = new PrefixIndex<String>();
+        for (String label : labels)
+            index.add(label, label);
+        return index.freeze();
+    }
+
+    @Test
+    void matchesTheStartOfEveryWord() {
+        PrefixIndex<String> index = index("cell line", "Cell viability", "flow_rate", "Ref. in dossier");
+
+        assertThat(index.search("cel", 10)).containsExactly("cell line", "Cell viability");
+        assertThat(index.search("LINE", 10)).containsExactly("cell line");
+        assertThat(index.search("rate", 10)).containsExactly("flow_rate");
+        assertThat(index.search("ell", 10)).isEmpty();
+    }
+
+    @Test
+    void everyQueryWordHasToMatch() {
+        PrefixIndex<String> index = index("cell line", "Cell viability", "line of cells");
+
+        assertThat(index.search("cell li", 10)).containsExactly("cell line", "line of cells");
+        assertThat(index.search("cell v", 10)).containsExactly("Cell viability");
+        assertThat(index.search(" - ", 10)).isEmpty();
+    }
+
+    @Test
+    void shortQueryWordsFindLabelsBeyondTheBestOnes() {
+        PrefixIndex<String> index = new PrefixIndex<String>();
+        //many short labels starting with "a" and "b", the only match has a long label
+        for (int i = 0; i < 500; i++)
+            index.add("a b " + i, "a b " + i);
+        index.add("a c with a much longer label than all others", "match");
+        index.freeze();
+
+        assertThat(index.search("a c", 10)).containsExactly("match");
+        assertThat(index.search("c a", 10)).containsExactly("match");
+        assertThat(index.search("a b", 1000)).hasSize(500);
+    }
+
+    @Test
+    void shortestLabelFirstUpToTheLimit() {
+        PrefixIndex<String> index = index("dose response curve", "dose", "dose level");
+
+        assertThat(index.search("do", 2)).containsExactly("dose", "dose level");
+    }
+}